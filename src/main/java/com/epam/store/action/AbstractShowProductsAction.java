@@ -1,20 +1,21 @@
 package com.epam.store.action;
 
 import com.epam.store.model.Product;
+import com.epam.store.service.Page;
 import com.epam.store.service.ProductService;
 import com.epam.store.servlet.WebContext;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.List;
 
 public abstract class AbstractShowProductsAction implements Action {
     @Override
     public abstract ActionResult execute(WebContext webContext);
 
-    protected List<Product> getProducts(WebContext webContext, String categoryName) {
+    protected Page<Product> getProductsPage(WebContext webContext, String categoryName) {
         ProductService productService = webContext.getService(ProductService.class);
-        return productService.getProductsForCategory(categoryName);
+        return productService.getCatalogPage(categoryName, Pagination.getPageNumber(webContext),
+                Pagination.PRODUCTS_PAGE_SIZE);
     }
 
     protected String getCategoryNameFromPath(WebContext webContext) {
@@ -3,6 +3,9 @@ package com.epam.store.action;
 import com.epam.store.service.ProductService;
 import com.epam.store.servlet.WebContext;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @WebAction(path = "POST/deleteProducts")
 public class DeleteProductsAction implements Action {
     @Override
@@ -10,10 +13,11 @@ public class DeleteProductsAction implements Action {
         String[] productToDelete = webContext.getParameterValues("productIdToDelete");
         if (productToDelete != null) {
             ProductService productService = webContext.getService(ProductService.class);
+            List<Long> ids = new ArrayList<>();
             for (String productID : productToDelete) {
-                Long id = Long.valueOf(productID);
-                productService.deleteProduct(id);
+                ids.add(Long.valueOf(productID));
             }
+            productService.deleteProducts(ids);
         }
         return new ActionResult(webContext.getPreviousURI(), true);
     }
@@ -0,0 +1,23 @@
+package com.epam.store.action;
+
+import com.epam.store.servlet.WebContext;
+
+/**
+ * Reads number of the requested page of the list
+ */
+class Pagination {
+    static final int PRODUCTS_PAGE_SIZE = 12;
+    static final int USERS_PAGE_SIZE = 20;
+    private static final String PAGE_PARAMETER = "page";
+    private static final int FIRST_PAGE = 1;
+
+    /**
+     * @return number of the page from the request parameter,
+     * or number of the first page if parameter is absent or wrong
+     */
+    static int getPageNumber(WebContext webContext) {
+        String page = webContext.getParameter(PAGE_PARAMETER);
+        if (page == null || !Validator.isIntegerNumber(page) || page.length() > 9) return FIRST_PAGE;
+        return Math.max(FIRST_PAGE, Integer.parseInt(page));
+    }
+}
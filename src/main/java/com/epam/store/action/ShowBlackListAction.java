@@ -1,13 +1,11 @@
 package com.epam.store.action;
 
 import com.epam.store.model.User;
+import com.epam.store.service.Page;
 import com.epam.store.service.UserService;
 import com.epam.store.servlet.Scope;
 import com.epam.store.servlet.WebContext;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 
 @WebAction(path = "GET/admin/black-list")
 public class ShowBlackListAction implements Action {
@@ -16,9 +14,10 @@ public class ShowBlackListAction implements Action {
     @Override
     public ActionResult execute(WebContext webContext) {
         UserService userService = webContext.getService(UserService.class);
-        List<User> allUsers = userService.getAllUsers();
-        List<User> bannedUsers = allUsers.stream().filter(User::getBanned).collect(Collectors.toList());
-        webContext.setAttribute("blackList", bannedUsers, Scope.REQUEST);
+        Page<User> blackListPage =
+                userService.getUsers(true, Pagination.getPageNumber(webContext), Pagination.USERS_PAGE_SIZE);
+        webContext.setAttribute("blackList", blackListPage.getItems(), Scope.REQUEST);
+        webContext.setAttribute("blackListPage", blackListPage, Scope.REQUEST);
         return adminPage;
     }
 }
@@ -1,11 +1,10 @@
 package com.epam.store.action;
 
 import com.epam.store.model.Product;
+import com.epam.store.service.Page;
 import com.epam.store.servlet.Scope;
 import com.epam.store.servlet.WebContext;
 
-import java.util.List;
-
 @WebAction(path = "GET/catalog")
 public class ShowCatalogAction extends AbstractShowProductsAction {
     private ActionResult catalogPage = new ActionResult("catalog");
@@ -14,8 +13,9 @@ public class ShowCatalogAction extends AbstractShowProductsAction {
     public ActionResult execute(WebContext webContext) {
         String categoryName = super.getCategoryNameFromPath(webContext);
         if (categoryName != null) {
-            List<Product> products = super.getProducts(webContext, categoryName);
-            webContext.setAttribute("products", products, Scope.REQUEST);
+            Page<Product> productsPage = super.getProductsPage(webContext, categoryName);
+            webContext.setAttribute("products", productsPage.getItems(), Scope.REQUEST);
+            webContext.setAttribute("productsPage", productsPage, Scope.REQUEST);
         }
         return catalogPage;
     }
@@ -1,11 +1,11 @@
 package com.epam.store.action;
 
 import com.epam.store.model.Product;
+import com.epam.store.service.Page;
+import com.epam.store.service.ProductService;
 import com.epam.store.servlet.Scope;
 import com.epam.store.servlet.WebContext;
 
-import java.util.List;
-
 @WebAction(path = "GET/admin/products")
 public class ShowProductsTableAction extends AbstractShowProductsAction {
     private ActionResult adminPage = new ActionResult("product-management");
@@ -14,8 +14,12 @@ public class ShowProductsTableAction extends AbstractShowProductsAction {
     public ActionResult execute(WebContext webContext) {
         String categoryName = super.getCategoryNameFromPath(webContext);
         if (categoryName != null) {
-            List<Product> products = super.getProducts(webContext, categoryName);
-            webContext.setAttribute("products", products, Scope.REQUEST);
+            ProductService productService = webContext.getService(ProductService.class);
+            //admin sees products directly from the database, not from the catalog cache
+            Page<Product> productsPage = productService.getProductPageForCategory(categoryName,
+                    Pagination.getPageNumber(webContext), Pagination.PRODUCTS_PAGE_SIZE);
+            webContext.setAttribute("products", productsPage.getItems(), Scope.REQUEST);
+            webContext.setAttribute("productsPage", productsPage, Scope.REQUEST);
             webContext.setAttribute("categoryName", categoryName, Scope.REQUEST);
         }
         return adminPage;
@@ -1,13 +1,11 @@
 package com.epam.store.action;
 
 import com.epam.store.model.User;
+import com.epam.store.service.Page;
 import com.epam.store.service.UserService;
 import com.epam.store.servlet.Scope;
 import com.epam.store.servlet.WebContext;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @WebAction(path = "GET/admin/users")
 public class ShowUsersListAction implements Action {
     private ActionResult adminPage = new ActionResult("admin");
@@ -15,9 +13,10 @@ public class ShowUsersListAction implements Action {
     @Override
     public ActionResult execute(WebContext webContext) {
         UserService userService = webContext.getService(UserService.class);
-        List<User> allUsers = userService.getAllUsers();
-        List<User> notBannedUsers = allUsers.stream().filter(user -> !user.getBanned()).collect(Collectors.toList());
-        webContext.setAttribute("users", notBannedUsers, Scope.REQUEST);
+        Page<User> usersPage =
+                userService.getUsers(false, Pagination.getPageNumber(webContext), Pagination.USERS_PAGE_SIZE);
+        webContext.setAttribute("users", usersPage.getItems(), Scope.REQUEST);
+        webContext.setAttribute("usersPage", usersPage, Scope.REQUEST);
         return adminPage;
     }
 }
@@ -1,5 +1,6 @@
 package com.epam.store.dao;
 
+import com.epam.store.metadata.DatabaseColumn;
 import com.epam.store.metadata.DatabaseTable;
 import com.epam.store.metadata.EntityManager;
 import com.epam.store.model.Attribute;
@@ -11,16 +12,21 @@ import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @DaoClass(entityClasses = {Attribute.class, IntegerAttribute.class, StringAttribute.class, DecimalAttribute.class,})
 class AttributeDao extends JdbcDao<Attribute> {
     private static final String VALUE_FIELD_NAME = "value";
+    private static final Column[] COLUMNS = Column.values();
+    private final int[] columnIndexes = new int[COLUMNS.length]; //indexes in the table columns by ordinal
 
     public AttributeDao(DaoSession daoSession, Class<Attribute> clazz, SqlQueryFactory queryFactory, DatabaseTable table) {
         super(daoSession, clazz, queryFactory, table);
+        List<DatabaseColumn> tableColumns = table.getColumns();
+        for (Column column : COLUMNS) {
+            columnIndexes[column.ordinal()] = findColumnIndex(tableColumns, column.name());
+        }
     }
 
 
@@ -45,28 +51,44 @@ class AttributeDao extends JdbcDao<Attribute> {
         statement.setObject(Column.STRING_VALUE.index, stringValue);
     }
 
-    protected List<Attribute> parseResultSet(ResultSet rs) throws SQLException {
-        List<Attribute> attributeResultList = new ArrayList<>();
-        while (rs.next()) {
-            long id = rs.getLong(table.getPrimaryKeyName());
-            String name = rs.getString(Column.NAME.name());
-            Integer integerValue = (Integer) rs.getObject(Column.INTEGER_VALUE.name()); //need to get null instead 0
-            BigDecimal decimalValue = rs.getBigDecimal(Column.DECIMAL_VALUE.name());
-            String stringValue = rs.getString(Column.STRING_VALUE.name());
-            Attribute attribute = null;
-            if (integerValue != null) {
-                attribute = new IntegerAttribute(name, integerValue);
-            } else if (decimalValue != null) {
-                attribute = new DecimalAttribute(name, decimalValue);
-            } else if (stringValue != null) {
-                attribute = new StringAttribute(name, stringValue);
-            }
-            if (attribute != null) {
-                attribute.setId(id);
-                attributeResultList.add(attribute);
-            }
+    /**
+     * Creates attribute of the type corresponding to the not null value column,
+     * columns are read by their positions known by the row mapper
+     *
+     * @return attribute or null if all value columns are null
+     */
+    @Override
+    protected Attribute readRow(ResultSet rs, RowMapper rowMapper) throws SQLException {
+        RowMapper.NodeMapper nodeMapper = rowMapper.getNodeMapper(rowMapper.getGraph().getRoot());
+        long id = nodeMapper.readId(rs);
+        String name = rs.getString(getPosition(nodeMapper, Column.NAME));
+        int integerValue = rs.getInt(getPosition(nodeMapper, Column.INTEGER_VALUE));
+        boolean integerValueIsNull = rs.wasNull(); //need to distinguish null from 0
+        BigDecimal decimalValue = rs.getBigDecimal(getPosition(nodeMapper, Column.DECIMAL_VALUE));
+        String stringValue = rs.getString(getPosition(nodeMapper, Column.STRING_VALUE));
+        Attribute attribute = null;
+        if (!integerValueIsNull) {
+            attribute = new IntegerAttribute(name, integerValue);
+        } else if (decimalValue != null) {
+            attribute = new DecimalAttribute(name, decimalValue);
+        } else if (stringValue != null) {
+            attribute = new StringAttribute(name, stringValue);
+        }
+        if (attribute != null) {
+            attribute.setId(id);
+        }
+        return attribute;
+    }
+
+    private int getPosition(RowMapper.NodeMapper nodeMapper, Column column) {
+        return nodeMapper.getPosition(columnIndexes[column.ordinal()]);
+    }
+
+    private int findColumnIndex(List<DatabaseColumn> tableColumns, String columnName) {
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).getName().equalsIgnoreCase(columnName)) return i;
         }
-        return attributeResultList;
+        throw new DaoException("No column " + columnName + " in table " + table.getName());
     }
 
     private enum Column {
@@ -0,0 +1,63 @@
+package com.epam.store.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search conditions, each of them requires the column of the main table to be equal to the value.
+ * Conditions are joined by AND in the order of adding. Search queries are cached
+ * by the list of the column names, so criteria with the same columns share one query.
+ */
+public class Criteria {
+    private final List<String> columns = new ArrayList<>();
+    private final List<Object> values = new ArrayList<>();
+
+    private Criteria() {
+    }
+
+    public static Criteria where(String columnName, Object value) {
+        return new Criteria().and(columnName, value);
+    }
+
+    /**
+     * @param parameters Map of parameters to search, the string key is name of parameter,
+     *                   and the Object is a value. Conditions are in the order of the map iteration.
+     */
+    public static Criteria of(Map<String, Object> parameters) {
+        Criteria criteria = new Criteria();
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            criteria.and(parameter.getKey(), parameter.getValue());
+        }
+        return criteria;
+    }
+
+    public Criteria and(String columnName, Object value) {
+        columns.add(columnName);
+        values.add(value);
+        return this;
+    }
+
+    /**
+     * @return names of the columns in the order of the conditions
+     */
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @return values in the order of the conditions
+     */
+    public List<Object> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Criteria{" +
+                "columns=" + columns +
+                ", values=" + values +
+                '}';
+    }
+}
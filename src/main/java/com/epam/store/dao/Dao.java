@@ -2,8 +2,11 @@ package com.epam.store.dao;
 
 import com.epam.store.model.BaseEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface Dao<T extends BaseEntity> {
 
@@ -31,6 +34,16 @@ public interface Dao<T extends BaseEntity> {
      */
     public T insertWithAdditionalParameter(T object, String paramName, Object value);
 
+    /**
+     * Inserts all objects into database by one batch, dependencies
+     * which are not inserted yet are inserted by batch as well
+     *
+     * @param objects    to insert
+     * @param parameters additional parameters which are the same for all objects
+     * @return The same objects, but with ids from database
+     */
+    public List<T> insertAll(List<T> objects, Map<String, Object> parameters);
+
     /**
      * Tries to find record with specified id
      *
@@ -39,6 +52,35 @@ public interface Dao<T extends BaseEntity> {
      */
     public T find(long id);
 
+    /**
+     * Tries to find record with specified id,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param id        of the record
+     * @param fetchPlan defines which dependencies are read within the same query
+     * @return found object or null if nothing was found
+     */
+    public T find(long id, FetchPlan fetchPlan);
+
+    /**
+     * Finds records with specified ids, ids are searched by chunks
+     * with IN clause, so the amount of queries doesn't depend on each id
+     *
+     * @param ids of the records, duplicates are ignored
+     * @return found objects in the order of the ids, ids without found records are skipped
+     */
+    public List<T> findAllByIds(Collection<Long> ids);
+
+    /**
+     * Finds records with specified ids,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param ids       of the records, duplicates are ignored
+     * @param fetchPlan defines which dependencies are read within the same query
+     * @return found objects in the order of the ids, ids without found records are skipped
+     */
+    public List<T> findAllByIds(Collection<Long> ids, FetchPlan fetchPlan);
+
     /**
      * Updates record in database with data from object
      *
@@ -72,6 +114,15 @@ public interface Dao<T extends BaseEntity> {
      */
     public boolean delete(long id);
 
+    /**
+     * Deletes all records with specified ids by one query,
+     * not deletes any related records
+     *
+     * @param ids of the records
+     * @return amount of deleted records
+     */
+    public int deleteAll(Collection<Long> ids);
+
     /**
      * Gets all records
      *
@@ -79,6 +130,23 @@ public interface Dao<T extends BaseEntity> {
      */
     public List<T> getAll();
 
+    /**
+     * Gets all records, dependencies are fetched according to the fetch plan
+     *
+     * @param fetchPlan defines which dependencies are read within the same query
+     * @return List of the found objects
+     */
+    public List<T> getAll(FetchPlan fetchPlan);
+
+    /**
+     * Gets one page of all records, dependencies are fetched according to the fetch plan
+     *
+     * @param fetchPlan   defines which dependencies are read within the same query
+     * @param pageRequest defines order and page of the records
+     * @return List of the found objects
+     */
+    public List<T> getAll(FetchPlan fetchPlan, PageRequest pageRequest);
+
     /**
      * Finds list of records with specified parameters.
      *
@@ -88,6 +156,83 @@ public interface Dao<T extends BaseEntity> {
      */
     public List<T> findByParameters(Map<String, Object> parameters);
 
+    /**
+     * Finds list of records with specified parameters,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param parameters Map of parameters to search, the string key is name of parameter,
+     *                   and the Object is a value.
+     * @param fetchPlan  defines which dependencies are read within the same query
+     * @return List of objects corresponding specified parameters.
+     */
+    public List<T> findByParameters(Map<String, Object> parameters, FetchPlan fetchPlan);
+
+    /**
+     * Finds one page of records with specified parameters,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param parameters  Map of parameters to search, the string key is name of parameter,
+     *                    and the Object is a value.
+     * @param fetchPlan   defines which dependencies are read within the same query
+     * @param pageRequest defines order and page of the records
+     * @return List of objects corresponding specified parameters.
+     */
+    public List<T> findByParameters(Map<String, Object> parameters, FetchPlan fetchPlan, PageRequest pageRequest);
+
+    /**
+     * Finds list of records which correspond to all conditions of the criteria
+     *
+     * @param criteria conditions to search, empty criteria finds all records
+     * @return List of the found objects
+     */
+    public List<T> findByCriteria(Criteria criteria);
+
+    /**
+     * Finds list of records which correspond to all conditions of the criteria,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param criteria  conditions to search, empty criteria finds all records
+     * @param fetchPlan defines which dependencies are read within the same query
+     * @return List of the found objects
+     */
+    public List<T> findByCriteria(Criteria criteria, FetchPlan fetchPlan);
+
+    /**
+     * Reads records with specified parameters through the forward-only cursor,
+     * entities are created while the stream is consumed, so all records are never kept in memory.
+     * Stream holds the statement and the result set until it's closed,
+     * it must be closed (for example, by try-with-resources) before closing of the session.
+     * Dependencies which are not joined by the plan are loaded as stubs with only id, and lazy
+     * dependencies must not be accessed until the stream is closed, because the connection
+     * can't run other queries while the cursor is open.
+     *
+     * @param parameters Map of parameters to search, empty map reads all records
+     * @param fetchPlan  defines which dependencies are read within the same query
+     * @param fetchSize  amount of the rows which driver reads from the database at once,
+     *                   the dialect can replace it with the value its driver needs for streaming
+     * @return lazy stream of the found objects
+     */
+    public Stream<T> stream(Map<String, Object> parameters, FetchPlan fetchPlan, int fetchSize);
+
+    /**
+     * Reads records with specified parameters through the forward-only cursor
+     * and passes each of them to the action, cursor is closed after the last record.
+     * Dependencies are loaded the same way as by {@link #stream}.
+     *
+     * @param parameters Map of parameters to search, empty map reads all records
+     * @param fetchPlan  defines which dependencies are read within the same query
+     * @param action     to perform for each found object
+     */
+    public void forEach(Map<String, Object> parameters, FetchPlan fetchPlan, Consumer<? super T> action);
+
+    /**
+     * Counts records with specified parameters
+     *
+     * @param parameters Map of parameters to search, empty map counts all records
+     * @return amount of the records
+     */
+    public long count(Map<String, Object> parameters);
+
     /**
      * Finds list of records with only one specified parameter
      *
@@ -95,6 +240,35 @@ public interface Dao<T extends BaseEntity> {
      */
     public List<T> findByParameter(String paramName, Object paramValue);
 
+    /**
+     * Finds list of records with only one specified parameter,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @return List of the found objects
+     */
+    public List<T> findByParameter(String paramName, Object paramValue, FetchPlan fetchPlan);
+
+    /**
+     * Finds one page of records with only one specified parameter,
+     * dependencies are fetched according to the fetch plan
+     *
+     * @param pageRequest defines order and page of the records
+     * @return List of the found objects
+     */
+    public List<T> findByParameter(String paramName, Object paramValue, FetchPlan fetchPlan, PageRequest pageRequest);
+
+    /**
+     * Finds records which specified parameter is equal to one of the values
+     * and groups them by the parameter value. Values are searched by chunks
+     * with IN clause, so the amount of queries doesn't depend on each value.
+     *
+     * @param paramName   name of the parameter, for example foreign key column
+     * @param paramValues values of the parameter to search
+     * @return Map with parameter value as a key and list of found objects as a value,
+     * values without found records are absent in the map
+     */
+    public Map<Long, List<T>> findGroupedByParameter(String paramName, Collection<Long> paramValues);
+
     /**
      * Finds list of records by corresponding specified parameter
      * and return only first object from list
@@ -2,6 +2,7 @@ package com.epam.store.dao;
 
 import com.epam.store.dbpool.SqlPooledConnection;
 import com.epam.store.model.BaseEntity;
+import com.epam.store.model.LazyLoader;
 
 public interface DaoSession extends AutoCloseable {
     public <T extends BaseEntity> Dao<T> getDao(Class<T> clazz);
@@ -14,4 +15,15 @@ public interface DaoSession extends AutoCloseable {
 
     public SqlPooledConnection getConnection();
 
+    /**
+     * @return loader for lazy references read in this session,
+     * it uses this session while it is open and a new session after closing
+     */
+    public LazyLoader getLazyLoader();
+
+    /**
+     * @return first-level cache of the entities found by id in this session, it's cleared on closing
+     */
+    public IdentityMap getIdentityMap();
+
 }
@@ -0,0 +1,85 @@
+package com.epam.store.dao;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Differences of the databases which are used by the dao: where the application tables are,
+ * how generated keys are read, pagination syntax and limits of the queries.
+ * Dialect is selected by the product name from the database metadata.
+ */
+public interface Dialect {
+
+    /**
+     * @return dialect of the database, or standard dialect if the database is unknown
+     * @throws DaoException if metadata can't be read
+     */
+    public static Dialect forDatabase(DatabaseMetaData metaData) {
+        try {
+            String productName = metaData.getDatabaseProductName();
+            boolean generatedKeysSupported = metaData.supportsGetGeneratedKeys();
+            if (productName.startsWith(H2Dialect.PRODUCT_NAME)) return new H2Dialect(generatedKeysSupported);
+            if (productName.startsWith(MySqlDialect.PRODUCT_NAME)) {
+                return new MySqlDialect(generatedKeysSupported, metaData.getURL());
+            }
+            return new StandardDialect(productName, generatedKeysSupported);
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
+    public String getName();
+
+    /**
+     * @return catalog of the application tables, or null if it isn't used to find them
+     * @throws DaoException if metadata can't be read
+     */
+    public String getCatalog(DatabaseMetaData metaData);
+
+    /**
+     * @return schema of the application tables, or null if it isn't used to find them
+     * @throws DaoException if metadata can't be read
+     */
+    public String getSchema(DatabaseMetaData metaData);
+
+    /**
+     * @return true if driver returns generated key after insert of one record
+     */
+    public boolean supportsGeneratedKeys();
+
+    /**
+     * @return true if driver returns generated keys of all records inserted by the batch
+     */
+    public boolean supportsBatchGeneratedKeys();
+
+    /**
+     * @return SQL function which returns id generated by the last insert of this connection,
+     * it's used if generated keys are not supported, or null if there is no such function
+     */
+    public String getLastInsertIdFunction();
+
+    /**
+     * @return clause which limits result of the ordered query, the first parameter of the clause
+     * is the max amount of the records, the second one is the amount of the skipped records
+     */
+    public String getPageClause();
+
+    /**
+     * @return max amount of the values in one IN list, power of two
+     */
+    public int getMaxInListSize();
+
+    /**
+     * @param fetchSize amount of the rows which have to be read from the database at once
+     * @return fetch size which has to be set to the forward only statement, so the driver reads
+     * the result by portions instead of reading the whole result into the memory
+     */
+    public int getStreamFetchSize(int fetchSize);
+
+    /**
+     * @param url of the database connection
+     * @return advices about settings of the connection which make the dao faster with this database
+     */
+    public List<String> getConnectionHints(String url);
+}
@@ -0,0 +1,119 @@
+package com.epam.store.dao;
+
+import com.epam.store.metadata.EntityManager;
+import com.epam.store.model.BaseEntity;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.aeonbits.owner.Accessible;
+import org.aeonbits.owner.Config;
+import org.aeonbits.owner.ConfigFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second-level cache of the entities found by id, shared by all sessions of the factory.
+ * Each entity class has its own size-bounded cache with expiration after write,
+ * when the size is reached the least recently used entities are evicted,
+ * classes which are not configured in entity-cache.properties are not cached.
+ * Hit and miss statistics are logged on shutdown of the application.
+ * Cache keeps copies of the entities, so changing of the entity read
+ * in one session doesn't affect other sessions.
+ * Entities are invalidated when they are updated or deleted through the dao,
+ * changes made in the database bypassing the dao are seen after expiration.
+ * Each class has generation which is incremented on every invalidation,
+ * reader takes it before reading of the entity from the database, and the read
+ * entity is not cached if the generation has changed since then, so the copy read
+ * before the change can't be cached after the invalidation.
+ */
+class EntityCache {
+    private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+    private static final String MAX_SIZE_PROPERTY_SUFFIX = ".maxSize";
+    private static final String EXPIRE_AFTER_WRITE_PROPERTY_SUFFIX = ".expireAfterWrite";
+    private final EntityCacheConfig config = ConfigFactory.create(EntityCacheConfig.class);
+    private final Map<Class<?>, Optional<Cache<Long, BaseEntity>>> caches = new ConcurrentHashMap<>();
+    private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * @return copy of the cached entity or null if it's not cached
+     */
+    <T extends BaseEntity> T get(Class<T> type, long id) {
+        Optional<Cache<Long, BaseEntity>> cache = getCache(type);
+        if (!cache.isPresent()) return null;
+        BaseEntity entity = cache.get().getIfPresent(id);
+        return (entity != null) ? EntityManager.getManager(type).copy(type.cast(entity)) : null;
+    }
+
+    /**
+     * @return current generation of the class, it has to be taken before reading of the entity
+     */
+    long getGeneration(Class<?> type) {
+        return getGenerationCounter(type).get();
+    }
+
+    /**
+     * Caches copy of the entity if no entity of its class was invalidated since the generation was taken
+     *
+     * @param generation of the class taken before reading of the entity
+     */
+    <T extends BaseEntity> void put(Class<T> type, T entity, long generation) {
+        Optional<Cache<Long, BaseEntity>> cache = getCache(type);
+        if (!cache.isPresent()) return;
+        AtomicLong generationCounter = getGenerationCounter(type);
+        if (generationCounter.get() != generation) return;
+        cache.get().put(entity.getId(), EntityManager.getManager(type).copy(entity));
+        //entity could be invalidated between the check and the put
+        if (generationCounter.get() != generation) cache.get().invalidate(entity.getId());
+    }
+
+    void invalidate(Class<?> type, long id) {
+        Optional<Cache<Long, BaseEntity>> cache = getCache(type);
+        if (!cache.isPresent()) return;
+        getGenerationCounter(type).incrementAndGet(); //before invalidation, so the readers see it after their put
+        cache.get().invalidate(id);
+    }
+
+    /**
+     * @return statistics of the caches by simple names of the entity classes
+     */
+    Map<String, CacheStats> getStatistics() {
+        Map<String, CacheStats> statistics = new TreeMap<>();
+        caches.forEach((type, cache) -> {
+            if (cache.isPresent()) statistics.put(type.getSimpleName(), cache.get().stats());
+        });
+        return statistics;
+    }
+
+    private Optional<Cache<Long, BaseEntity>> getCache(Class<?> type) {
+        return caches.computeIfAbsent(type, this::createCache);
+    }
+
+    private AtomicLong getGenerationCounter(Class<?> type) {
+        return generations.computeIfAbsent(type, key -> new AtomicLong());
+    }
+
+    private Optional<Cache<Long, BaseEntity>> createCache(Class<?> type) {
+        String maxSize = config.getProperty(type.getSimpleName() + MAX_SIZE_PROPERTY_SUFFIX);
+        if (maxSize == null) return Optional.empty(); //caching of the class is not configured
+        String expireAfterWrite = config.getProperty(type.getSimpleName() + EXPIRE_AFTER_WRITE_PROPERTY_SUFFIX);
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                .maximumSize(Long.parseLong(maxSize.trim()))
+                .recordStats();
+        if (expireAfterWrite != null) {
+            cacheBuilder.expireAfterWrite(Long.parseLong(expireAfterWrite.trim()), TimeUnit.MINUTES);
+        }
+        log.debug("Created second-level cache for " + type.getSimpleName());
+        return Optional.of(cacheBuilder.build());
+    }
+
+    @Config.Sources("classpath:entity-cache.properties")
+    interface EntityCacheConfig extends Config, Accessible {
+    }
+}
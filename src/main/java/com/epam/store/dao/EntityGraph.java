@@ -0,0 +1,236 @@
+package com.epam.store.dao;
+
+import com.epam.store.metadata.DatabaseColumn;
+import com.epam.store.metadata.DatabaseTable;
+import com.epam.store.metadata.EntityManager;
+import com.epam.store.model.BaseEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tree of the tables which are read by one query, created by {@link FetchPlanner}.
+ * The root node is the table of the requested entity, its children are
+ * the tables joined for its dependencies. Each node knows the labels
+ * of its columns in the {@link java.sql.ResultSet}, so the whole entity
+ * tree can be read from the one row.
+ */
+class EntityGraph {
+    private final Node root;
+    private final String select;
+    private final Map<SqlQueryType, JoinedQuery> queries = new ConcurrentHashMap<>();
+    private final Map<Integer, JoinedQuery> findByIdsQueries = new ConcurrentHashMap<>();
+    private final Map<List<String>, JoinedQuery> findByParametersQueries = new ConcurrentHashMap<>();
+    private final Map<PageQueryKey, JoinedQuery> pageQueries = new ConcurrentHashMap<>();
+    private volatile RowMapper rowMapper;
+
+    EntityGraph(Node root, String select) {
+        this.root = root;
+        this.select = select;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return SELECT part of the query with all joins, but without WHERE clause
+     */
+    public String getSelect() {
+        return select;
+    }
+
+    Map<SqlQueryType, JoinedQuery> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return queries which find entities by the list of ids, keyed by size of the IN list
+     */
+    Map<Integer, JoinedQuery> getFindByIdsQueries() {
+        return findByIdsQueries;
+    }
+
+    /**
+     * @return search queries keyed by the list of the parameter names
+     */
+    Map<List<String>, JoinedQuery> getFindByParametersQueries() {
+        return findByParametersQueries;
+    }
+
+    /**
+     * @return page queries keyed by the parameter names and the order of the page
+     */
+    Map<PageQueryKey, JoinedQuery> getPageQueries() {
+        return pageQueries;
+    }
+
+    /**
+     * @param rs result set of any query of this graph, its metadata is used
+     *           to create the mapper on the first call
+     * @return mapper of the rows of this graph queries
+     */
+    RowMapper getRowMapper(ResultSet rs) throws SQLException {
+        RowMapper mapper = rowMapper;
+        if (mapper == null) {
+            mapper = new RowMapper(this, rs.getMetaData());
+            rowMapper = mapper; //the same mapper can be created concurrently, any of them can be used
+        }
+        return mapper;
+    }
+
+    /**
+     * Parameter names and the part of the {@link PageRequest} which defines the page query,
+     * limit, offset and id after which records are read are parameters of the query
+     */
+    static final class PageQueryKey {
+        private final List<String> parametersNames;
+        private final String orderColumn;
+        private final boolean descending;
+        private final boolean keyset;
+
+        PageQueryKey(List<String> parametersNames, PageRequest pageRequest) {
+            this.parametersNames = parametersNames;
+            this.orderColumn = pageRequest.getOrderColumn();
+            this.descending = pageRequest.isDescending();
+            this.keyset = pageRequest.getAfterId() != null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            PageQueryKey that = (PageQueryKey) o;
+
+            if (descending != that.descending) return false;
+            if (keyset != that.keyset) return false;
+            if (!parametersNames.equals(that.parametersNames)) return false;
+            return orderColumn != null ? orderColumn.equals(that.orderColumn) : that.orderColumn == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = parametersNames.hashCode();
+            result = 31 * result + (orderColumn != null ? orderColumn.hashCode() : 0);
+            result = 31 * result + (descending ? 1 : 0);
+            result = 31 * result + (keyset ? 1 : 0);
+            return result;
+        }
+    }
+
+    static class Node {
+        private final String alias;
+        private final String labelPrefix;
+        private final DatabaseTable table;
+        private final EntityManager<? extends BaseEntity> entityManager;
+        private final Map<String, Node> joinedDependencies = new LinkedHashMap<>();
+        private final Set<String> stubDependencies = new HashSet<>();
+        private final Set<String> lazyDependencies = new HashSet<>();
+        private final Set<String> excludedFields = new HashSet<>();
+        private final int[] fieldIndexes;
+
+        Node(String alias, String labelPrefix, DatabaseTable table, EntityManager<? extends BaseEntity> entityManager) {
+            this.alias = alias;
+            this.labelPrefix = labelPrefix;
+            this.table = table;
+            this.entityManager = entityManager;
+            List<DatabaseColumn> columns = table.getColumns();
+            fieldIndexes = new int[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                fieldIndexes[i] = entityManager.getFieldIndex(columns.get(i).getFieldName());
+            }
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public DatabaseTable getTable() {
+            return table;
+        }
+
+        public List<DatabaseColumn> getColumns() {
+            return table.getColumns();
+        }
+
+        public EntityManager<? extends BaseEntity> getEntityManager() {
+            return entityManager;
+        }
+
+        /**
+         * @return node of the joined dependency or null if dependency is not joined
+         */
+        public Node getJoinedDependency(String fieldName) {
+            return joinedDependencies.get(fieldName);
+        }
+
+        public Map<String, Node> getJoinedDependencies() {
+            return Collections.unmodifiableMap(joinedDependencies);
+        }
+
+        /**
+         * @return true if dependency has to be created as a stub with only id
+         */
+        public boolean isStubDependency(String fieldName) {
+            return stubDependencies.contains(fieldName);
+        }
+
+        /**
+         * @return true if dependency has to be created as a lazy reference,
+         * which loads its state on the first access
+         */
+        public boolean isLazyDependency(String fieldName) {
+            return lazyDependencies.contains(fieldName);
+        }
+
+        /**
+         * @return true if column of the field is not selected
+         */
+        public boolean isExcludedField(String fieldName) {
+            return excludedFields.contains(fieldName);
+        }
+
+        /**
+         * @param columnIndex index of the column in {@link #getColumns()}
+         * @return index of the entity field for the column or -1
+         * if entity has no such field or the field is excluded
+         */
+        public int getFieldIndex(int columnIndex) {
+            return fieldIndexes[columnIndex];
+        }
+
+        /**
+         * @return label of the column in the result set
+         */
+        public String getLabel(DatabaseColumn column) {
+            return labelPrefix + column.getName();
+        }
+
+        public String getPrimaryKeyLabel() {
+            return getLabel(table.getPrimaryKeyColumn());
+        }
+
+        void addJoinedDependency(String fieldName, Node node) {
+            joinedDependencies.put(fieldName, node);
+        }
+
+        void addStubDependency(String fieldName) {
+            stubDependencies.add(fieldName);
+        }
+
+        void addLazyDependency(String fieldName) {
+            lazyDependencies.add(fieldName);
+        }
+
+        void addExcludedField(String fieldName) {
+            excludedFields.add(fieldName);
+            List<DatabaseColumn> columns = table.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).getFieldName().equals(fieldName)) fieldIndexes[i] = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.epam.store.dao;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes which dependencies of the entity have to be fetched
+ * with LEFT JOIN in the same query as the entity itself.
+ * Dependencies are named by the entity field names, nested
+ * dependencies are separated by dot, for example "product.category".
+ * Joining of the nested dependency means joining of all its parents.
+ * Dependencies which are not joined are read by separate query
+ * through the DAO of their type.
+ * <p>
+ * Plan also allows partial loading: a dependency can be loaded as a stub
+ * which contains only id, without join and without query, and any field
+ * can be excluded from the select, then it stays null in the read entity.
+ * A dependency can also be loaded lazily: it is a stub which loads its state
+ * on the first access through the getter of the entity which holds it.
+ * Plans of the cursor reading load all not joined dependencies as stubs,
+ * because the connection can't run other queries while the cursor is open.
+ */
+public final class FetchPlan {
+    private static final String PATH_SEPARATOR = ".";
+    private static final FetchPlan ALL =
+            new FetchPlan(true, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet(), false);
+    private static final FetchPlan NONE =
+            new FetchPlan(false, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet(), false);
+    private final boolean joinAll;
+    private final Set<String> joinedPaths;
+    private final Set<String> stubPaths;
+    private final Set<String> excludedPaths;
+    private final Set<String> lazyPaths;
+    private final boolean stubNotJoined;
+
+    private FetchPlan(boolean joinAll, Set<String> joinedPaths, Set<String> stubPaths, Set<String> excludedPaths,
+                      Set<String> lazyPaths, boolean stubNotJoined) {
+        this.joinAll = joinAll;
+        this.joinedPaths = joinedPaths;
+        this.stubPaths = stubPaths;
+        this.excludedPaths = excludedPaths;
+        this.lazyPaths = lazyPaths;
+        this.stubNotJoined = stubNotJoined;
+    }
+
+    /**
+     * @return plan which joins all dependencies of the entity and their dependencies
+     */
+    public static FetchPlan all() {
+        return ALL;
+    }
+
+    /**
+     * @return plan which joins nothing, every dependency will be read by separate query
+     */
+    public static FetchPlan none() {
+        return NONE;
+    }
+
+    /**
+     * @param paths field names of dependencies to join, for example "category" or "product.price"
+     * @return plan which joins only specified dependencies
+     */
+    public static FetchPlan join(String... paths) {
+        Set<String> joinedPaths = new HashSet<>();
+        for (String path : paths) {
+            //add path itself and all its parents
+            int separatorIndex = path.indexOf(PATH_SEPARATOR);
+            while (separatorIndex != -1) {
+                joinedPaths.add(path.substring(0, separatorIndex));
+                separatorIndex = path.indexOf(PATH_SEPARATOR, separatorIndex + 1);
+            }
+            joinedPaths.add(path);
+        }
+        return new FetchPlan(false, Collections.unmodifiableSet(joinedPaths), Collections.emptySet(),
+                Collections.emptySet(), Collections.emptySet(), false);
+    }
+
+    /**
+     * @param paths field names of dependencies which have to be loaded as a stub,
+     *              the stub is an object of the dependency type with only id,
+     *              other fields of the stub are not read from database
+     * @return new plan which is the same as this one, but with specified stubs
+     */
+    public FetchPlan stub(String... paths) {
+        return new FetchPlan(joinAll, joinedPaths, union(stubPaths, paths), excludedPaths, lazyPaths,
+                stubNotJoined);
+    }
+
+    /**
+     * @param paths field names which have to be excluded from the select,
+     *              for example "description" or "image.content"
+     * @return new plan which is the same as this one, but without specified fields
+     */
+    public FetchPlan exclude(String... paths) {
+        return new FetchPlan(joinAll, joinedPaths, stubPaths, union(excludedPaths, paths), lazyPaths,
+                stubNotJoined);
+    }
+
+    /**
+     * @param paths field names of dependencies which have to be loaded lazily,
+     *              such dependency is read as a stub with only id and its state
+     *              is loaded by separate query on the first getter call
+     * @return new plan which is the same as this one, but with specified lazy dependencies
+     */
+    public FetchPlan lazy(String... paths) {
+        return new FetchPlan(joinAll, joinedPaths, stubPaths, excludedPaths, union(lazyPaths, paths),
+                stubNotJoined);
+    }
+
+    /**
+     * @return new plan which is the same as this one, but loads as stubs all dependencies
+     * which are neither joined nor lazy, instead of reading them by separate query
+     */
+    FetchPlan stubNotJoined() {
+        if (stubNotJoined) return this;
+        return new FetchPlan(joinAll, joinedPaths, stubPaths, excludedPaths, lazyPaths, true);
+    }
+
+    /**
+     * @return true if dependencies which are not joined have to be loaded as stubs
+     */
+    boolean isStubNotJoined() {
+        return stubNotJoined;
+    }
+
+    /**
+     * @param path dot separated field names from the root entity to the dependency
+     * @return true if dependency has to be joined
+     */
+    boolean isJoined(String path) {
+        return !isStub(path) && !isLazy(path) && (joinAll || joinedPaths.contains(path));
+    }
+
+    boolean isStub(String path) {
+        return stubPaths.contains(path);
+    }
+
+    boolean isLazy(String path) {
+        return !isStub(path) && lazyPaths.contains(path);
+    }
+
+    boolean isExcluded(String path) {
+        return excludedPaths.contains(path);
+    }
+
+    private static Set<String> union(Set<String> paths, String[] additionalPaths) {
+        Set<String> result = new HashSet<>(paths);
+        Collections.addAll(result, additionalPaths);
+        return Collections.unmodifiableSet(result);
+    }
+
+    static String childPath(String parentPath, String fieldName) {
+        return parentPath.isEmpty() ? fieldName : parentPath + PATH_SEPARATOR + fieldName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FetchPlan fetchPlan = (FetchPlan) o;
+
+        if (joinAll != fetchPlan.joinAll) return false;
+        if (!joinedPaths.equals(fetchPlan.joinedPaths)) return false;
+        if (!stubPaths.equals(fetchPlan.stubPaths)) return false;
+        if (!excludedPaths.equals(fetchPlan.excludedPaths)) return false;
+        if (!lazyPaths.equals(fetchPlan.lazyPaths)) return false;
+        if (stubNotJoined != fetchPlan.stubNotJoined) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (joinAll ? 1 : 0);
+        result = 31 * result + joinedPaths.hashCode();
+        result = 31 * result + stubPaths.hashCode();
+        result = 31 * result + excludedPaths.hashCode();
+        result = 31 * result + lazyPaths.hashCode();
+        result = 31 * result + (stubNotJoined ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPlan{" +
+                "joinAll=" + joinAll +
+                ", joinedPaths=" + joinedPaths +
+                ", stubPaths=" + stubPaths +
+                ", excludedPaths=" + excludedPaths +
+                ", lazyPaths=" + lazyPaths +
+                ", stubNotJoined=" + stubNotJoined +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package com.epam.store.dao;
+
+import com.epam.store.metadata.DBMetadataManager;
+import com.epam.store.metadata.DatabaseColumn;
+import com.epam.store.metadata.DatabaseTable;
+import com.epam.store.metadata.EntityManager;
+import com.epam.store.model.BaseEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates {@link EntityGraph} for entity class and {@link FetchPlan}
+ * using database metadata: every foreign key column which corresponds
+ * to the entity field and is allowed by the fetch plan becomes LEFT JOIN
+ * of the dependency table. Created graphs are cached.
+ */
+class FetchPlanner {
+    private static final Logger log = LoggerFactory.getLogger(FetchPlanner.class);
+    private static final int MAX_JOIN_DEPTH = 3;
+    private static final String ALIAS_PREFIX = "T";
+    private static final String ROOT_ALIAS = ALIAS_PREFIX + 0;
+    private static final String LABEL_SEPARATOR = "_";
+    private static final String COMMA = ", ";
+    private final ConcurrentMap<Class<?>, ConcurrentMap<FetchPlan, EntityGraph>> graphCache = new ConcurrentHashMap<>();
+    private final DBMetadataManager dbMetadataManager;
+    private final String selectTemplate;
+    private final String leftJoinTemplate;
+
+    /**
+     * @param selectTemplate   template of the select, %1$s is a select list, %2$s = table name,
+     *                         %3$s = table alias, %4$s = join clauses
+     * @param leftJoinTemplate template of the join, %1$s is a joined table name, %2$s = its alias,
+     *                         %3$s = its primary key, %4$s = alias of the referencing table, %5$s = foreign key
+     */
+    FetchPlanner(DBMetadataManager dbMetadataManager, String selectTemplate, String leftJoinTemplate) {
+        this.dbMetadataManager = dbMetadataManager;
+        this.selectTemplate = selectTemplate;
+        this.leftJoinTemplate = leftJoinTemplate;
+    }
+
+    public EntityGraph getGraph(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan) {
+        return graphCache.computeIfAbsent(entityClass, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fetchPlan, plan -> createGraph(entityClass, plan));
+    }
+
+    @SuppressWarnings("unchecked")
+    private EntityGraph createGraph(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan) {
+        DatabaseTable table = dbMetadataManager.getTableForClass(entityClass);
+        EntityGraph.Node root = new EntityGraph.Node(ROOT_ALIAS, "", table, EntityManager.getManager(entityClass));
+        GraphBuilder builder = new GraphBuilder(fetchPlan);
+        //all not excluded columns of the main table are selected,
+        //because special dao can read columns which are not entity fields
+        for (DatabaseColumn column : table.getColumns()) {
+            if (!column.isPrimaryKey() && fetchPlan.isExcluded(column.getFieldName())) {
+                root.addExcludedField(column.getFieldName());
+                continue;
+            }
+            builder.addSelectColumn(root.getAlias() + "." + column.getName());
+        }
+        builder.addJoins(root, "", 1);
+        String select = String.format(selectTemplate, builder.selectList, table.getName(), root.getAlias(), builder.joins);
+        log.debug("Created fetch graph for " + entityClass.getSimpleName() + " with " + fetchPlan + ": " + select);
+        return new EntityGraph(root, select);
+    }
+
+    private class GraphBuilder {
+        private final FetchPlan fetchPlan;
+        private final StringBuilder selectList = new StringBuilder();
+        private final StringBuilder joins = new StringBuilder();
+        private int aliasCounter = 1;
+
+        private GraphBuilder(FetchPlan fetchPlan) {
+            this.fetchPlan = fetchPlan;
+        }
+
+        /**
+         * Adds to the graph all dependencies of the node which are allowed by the fetch plan
+         * and then the same for each added dependency. Dependencies deeper than {@link #MAX_JOIN_DEPTH}
+         * are not joined, so they are read by separate query or loaded as stubs if the plan requires.
+         */
+        @SuppressWarnings("unchecked")
+        private void addJoins(EntityGraph.Node parent, String parentPath, int depth) {
+            if (depth > MAX_JOIN_DEPTH && !fetchPlan.isStubNotJoined()) return;
+            EntityManager<? extends BaseEntity> parentManager = parent.getEntityManager();
+            for (DatabaseColumn column : parent.getColumns()) {
+                String fieldName = column.getFieldName();
+                if (!column.isForeignKey() || !parentManager.hasField(fieldName)) continue;
+                String path = FetchPlan.childPath(parentPath, fieldName);
+                if (fetchPlan.isExcluded(path)) continue;
+                if (fetchPlan.isStub(path)) {
+                    parent.addStubDependency(fieldName); //id of the stub is the foreign key value
+                    continue;
+                }
+                if (fetchPlan.isLazy(path)) {
+                    parent.addLazyDependency(fieldName);
+                    continue;
+                }
+                if (depth > MAX_JOIN_DEPTH || !fetchPlan.isJoined(path)) {
+                    if (fetchPlan.isStubNotJoined()) parent.addStubDependency(fieldName);
+                    continue;
+                }
+                Class<?> fieldType = parentManager.getFieldType(fieldName);
+                if (!BaseEntity.class.isAssignableFrom(fieldType)) {
+                    throw new DaoException("Trying to join table for type which not extends BaseEntity");
+                }
+                Class<? extends BaseEntity> type = fieldType.asSubclass(BaseEntity.class);
+                DatabaseTable table = dbMetadataManager.getTableForClass(type);
+                String alias = ALIAS_PREFIX + aliasCounter++;
+                EntityGraph.Node node =
+                        new EntityGraph.Node(alias, alias + LABEL_SEPARATOR, table, EntityManager.getManager(type));
+                parent.addJoinedDependency(fieldName, node);
+                joins.append(String.format(leftJoinTemplate,
+                        table.getName(), alias, table.getPrimaryKeyName(), parent.getAlias(), column.getName()));
+                addSelectColumns(node, path);
+                addJoins(node, path, depth + 1);
+            }
+        }
+
+        /**
+         * Adds primary key and columns which correspond to the not excluded entity fields,
+         * the columns are labeled with alias prefix to avoid same names
+         */
+        private void addSelectColumns(EntityGraph.Node node, String nodePath) {
+            EntityManager<? extends BaseEntity> entityManager = node.getEntityManager();
+            for (DatabaseColumn column : node.getColumns()) {
+                String fieldName = column.getFieldName();
+                if (!column.isPrimaryKey()) {
+                    if (!entityManager.hasField(fieldName)) continue;
+                    if (fetchPlan.isExcluded(FetchPlan.childPath(nodePath, fieldName))) {
+                        node.addExcludedField(fieldName);
+                        continue;
+                    }
+                }
+                addSelectColumn(node.getAlias() + "." + column.getName() + " AS " + node.getLabel(column));
+            }
+        }
+
+        private void addSelectColumn(String selectColumn) {
+            if (selectList.length() > 0) selectList.append(COMMA);
+            selectList.append(selectColumn);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.epam.store.dao;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Dialect of the H2 database, application tables are in the current schema
+ */
+class H2Dialect extends StandardDialect {
+    static final String PRODUCT_NAME = "H2";
+    private static final String CURRENT_SCHEMA_QUERY = "CALL SCHEMA()";
+    private static final String LAST_INSERT_ID_FUNCTION = "SCOPE_IDENTITY()";
+
+    H2Dialect(boolean generatedKeysSupported) {
+        super(PRODUCT_NAME, generatedKeysSupported);
+    }
+
+    @Override
+    public String getCatalog(DatabaseMetaData metaData) {
+        return null; //H2 database has only one catalog
+    }
+
+    @Override
+    public String getSchema(DatabaseMetaData metaData) {
+        try (Statement statement = metaData.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery(CURRENT_SCHEMA_QUERY)) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
+    @Override
+    public String getLastInsertIdFunction() {
+        return LAST_INSERT_ID_FUNCTION;
+    }
+}
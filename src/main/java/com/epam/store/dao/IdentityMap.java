@@ -0,0 +1,111 @@
+package com.epam.store.dao;
+
+import com.epam.store.model.BaseEntity;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * First-level cache of the {@link DaoSession}, keeps entities found by id
+ * in this session, so the same entity is read from the database once per session
+ * and the same object is returned for each reading.
+ * Map is backed by the shared {@link EntityCache}, entities which are absent
+ * in the map are searched there, entities put to the map are cached there as well,
+ * removing of the entity invalidates it in the shared cache. Entity read from the database
+ * is cached there only if no entity of its class was invalidated while it was read,
+ * so the generation of the class has to be taken before the reading.
+ * During the transaction entities are kept only in the map, because they may be
+ * rolled back, and removed entities are invalidated in the shared cache once more
+ * after the end of the transaction, since other sessions could cache them
+ * before the changes were committed.
+ * Map is not thread safe, as well as the session it belongs to.
+ */
+public class IdentityMap {
+    private final Map<Class<?>, Map<Long, BaseEntity>> entitiesByClass = new HashMap<>();
+    private final EntityCache secondLevelCache;
+    private final Map<Class<?>, Set<Long>> removedInTransaction = new HashMap<>();
+    private boolean inTransaction;
+
+    IdentityMap(EntityCache secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    /**
+     * @return entity of the class with such id or null if it was neither read in this session nor cached
+     */
+    public <T extends BaseEntity> T get(Class<T> type, long id) {
+        Map<Long, BaseEntity> entities = entitiesByClass.get(type);
+        T entity = (entities != null) ? type.cast(entities.get(id)) : null;
+        if (entity == null && !isRemovedInTransaction(type, id)) {
+            entity = secondLevelCache.get(type, id);
+            if (entity != null) putToSession(type, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * @return generation of the shared cache for the class, it has to be taken
+     * before reading of the entities from the database and passed to {@link #put}
+     */
+    public long getGeneration(Class<?> type) {
+        return secondLevelCache.getGeneration(type);
+    }
+
+    /**
+     * @param generation of the class taken by {@link #getGeneration} before reading of the entity
+     */
+    public <T extends BaseEntity> void put(Class<T> type, T entity, long generation) {
+        putToSession(type, entity);
+        if (!inTransaction) secondLevelCache.put(type, entity, generation);
+    }
+
+    /**
+     * Removes entity, must be called after the record is changed or deleted
+     */
+    public void remove(Class<?> type, long id) {
+        Map<Long, BaseEntity> entities = entitiesByClass.get(type);
+        if (entities != null) entities.remove(id);
+        secondLevelCache.invalidate(type, id);
+        if (inTransaction) removedInTransaction.computeIfAbsent(type, key -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Stops caching of the entities in the shared cache until the end of the transaction
+     */
+    void beginTransaction() {
+        inTransaction = true;
+    }
+
+    /**
+     * Invalidates entities removed during the transaction in the shared cache,
+     * must be called after commit or rollback
+     *
+     * @param committed false if the transaction was rolled back, then entities read
+     *                  during the transaction are removed from the map as well
+     */
+    void endTransaction(boolean committed) {
+        if (!inTransaction) return;
+        inTransaction = false;
+        removedInTransaction.forEach((type, ids) -> ids.forEach(id -> secondLevelCache.invalidate(type, id)));
+        removedInTransaction.clear();
+        if (!committed) clear();
+    }
+
+    /**
+     * Clears the map of the session, shared cache is not affected
+     */
+    public void clear() {
+        entitiesByClass.clear();
+    }
+
+    private boolean isRemovedInTransaction(Class<?> type, long id) {
+        Set<Long> ids = removedInTransaction.get(type);
+        return ids != null && ids.contains(id);
+    }
+
+    private <T extends BaseEntity> void putToSession(Class<T> type, T entity) {
+        entitiesByClass.computeIfAbsent(type, key -> new HashMap<>()).put(entity.getId(), entity);
+    }
+}
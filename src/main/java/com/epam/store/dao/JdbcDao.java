@@ -11,19 +11,23 @@ import org.slf4j.LoggerFactory;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 class JdbcDao<T extends BaseEntity> implements Dao<T> {
     private static final Logger log = LoggerFactory.getLogger(JdbcDao.class);
+    protected static final FetchPlan DEFAULT_FETCH_PLAN = FetchPlan.all();
+    private static final int DEFAULT_FETCH_SIZE = 100;
     protected final Class<T> clazz;
     protected DaoSession daoSession;
     protected SqlPooledConnection connection;
     protected SqlQueryFactory queryFactory;
     protected EntityManager<T> entityManager;
     protected DatabaseTable table;
+    protected IdentityMap identityMap;
 
     public JdbcDao(DaoSession daoSession, Class<T> clazz, SqlQueryFactory queryFactory, DatabaseTable table) {
         this.daoSession = daoSession;
@@ -32,6 +36,7 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         this.queryFactory = queryFactory;
         this.clazz = clazz;
         this.entityManager = EntityManager.getManager(clazz);
+        this.identityMap = daoSession.getIdentityMap();
     }
 
     /**
@@ -45,19 +50,47 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         return insertWithAdditionalParameters(object, new HashMap<>()); //empty parameters
     }
 
+    /**
+     * {@inheritDoc}
+     * Id is taken from the generated keys of the insert statement,
+     * if driver doesn't support generated keys, then it's read by separate query.
+     *
+     * @throws DaoException if inserted more than one record
+     *                      or if record was not inserted
+     */
     @Override
     public T insertWithAdditionalParameters(T object, Map<String, Object> parameters) {
         SqlQuery insertQuery = queryFactory.getQueryForClass(SqlQueryType.INSERT, clazz);
-        try (PreparedStatement statement = connection.prepareStatement(insertQuery.getQuery())) {
+        int autoGeneratedKeys =
+                isGeneratedKeysSupported() ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS;
+        try (PreparedStatement statement = connection.prepareStatement(insertQuery.getQuery(), autoGeneratedKeys)) {
             prepareStatementForInsert(statement, object, insertQuery, parameters);
             int inserted = statement.executeUpdate();
             if (inserted > 1) throw new DaoException("Inserted more than one record: " + inserted);
             if (inserted < 1) throw new DaoException("Record was not inserted");
+            if (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) {
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        object.setId(generatedKeys.getLong(1));
+                        return object;
+                    }
+                }
+            }
         } catch (SQLException exc) {
             throw new DaoException(exc);
         }
-        //getting id of the inserted object
+        //generated key was not returned, so read id of the inserted object
+        return readLastInsertedId(object);
+    }
+
+    /**
+     * Sets to the object id of the last inserted record
+     */
+    private T readLastInsertedId(T object) {
         SqlQuery readLastQuery = queryFactory.getQueryForClass(SqlQueryType.READ_LAST, clazz);
+        if (readLastQuery == null) {
+            throw new DaoException("Generated key was not returned by " + queryFactory.getDialect().getName());
+        }
         try (PreparedStatement statement = connection.prepareStatement(readLastQuery.getQuery());
              ResultSet rs = statement.executeQuery()) {
             if (!rs.next()) throw new DaoException("Last inserted ID was not found");
@@ -79,16 +112,71 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
     /**
      * {@inheritDoc}
      *
+     * @throws DaoException if not all records were inserted
+     */
+    @Override
+    public List<T> insertAll(List<T> objects, Map<String, Object> parameters) {
+        if (objects.isEmpty()) return objects;
+        insertNewDependencies(objects);
+        if (!isBatchGeneratedKeysSupported()) {
+            //ids can't be got after the batch, so insert one by one, the statement is reused by the connection
+            for (T object : objects) {
+                insertWithAdditionalParameters(object, parameters);
+            }
+            return objects;
+        }
+        SqlQuery insertQuery = queryFactory.getQueryForClass(SqlQueryType.INSERT, clazz);
+        try (PreparedStatement statement =
+                     connection.prepareStatement(insertQuery.getQuery(), Statement.RETURN_GENERATED_KEYS)) {
+            for (T object : objects) {
+                prepareStatementForInsert(statement, object, insertQuery, parameters);
+                statement.addBatch();
+            }
+            int[] inserted = statement.executeBatch();
+            for (int count : inserted) {
+                if (count == 0) throw new DaoException("Record was not inserted");
+            }
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                for (T object : objects) {
+                    if (!generatedKeys.next()) throw new DaoException("Not all generated ids were returned");
+                    object.setId(generatedKeys.getLong(1));
+                }
+            }
+        } catch (SQLException exc) {
+            throw new DaoException(exc);
+        }
+        return objects;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Entity is taken from the identity map of the session if it was already found in this session.
+     *
      * @throws DaoException if found more than one record
      */
     @Override
     public T find(long id) {
+        T entity = identityMap.get(clazz, id);
+        if (entity != null) return entity;
+        long generation = identityMap.getGeneration(clazz);
+        entity = find(id, DEFAULT_FETCH_PLAN);
+        if (entity != null) identityMap.put(clazz, entity, generation); //only fully loaded entities are kept
+        return entity;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if found more than one record
+     */
+    @Override
+    public T find(long id, FetchPlan fetchPlan) {
         List<T> list;
-        SqlQuery readQuery = queryFactory.getQueryForClass(SqlQueryType.FIND_BY_ID, clazz);
+        JoinedQuery readQuery = queryFactory.getJoinedQueryForClass(SqlQueryType.FIND_BY_ID, clazz, fetchPlan);
         try (PreparedStatement statement = connection.prepareStatement(readQuery.getQuery())) {
             statement.setLong(1, id);
             ResultSet rs = statement.executeQuery();
-            list = parseResultSet(rs);
+            list = parseResultSet(rs, readQuery.getGraph());
             rs.close();
         } catch (SQLException exc) {
             throw new DaoException(exc);
@@ -102,6 +190,61 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         return list.get(0);
     }
 
+    /**
+     * {@inheritDoc}
+     * Entities which were already found in this session are taken from the identity map.
+     *
+     * @throws DaoException if error occurred during execute sql query
+     */
+    @Override
+    public List<T> findAllByIds(Collection<Long> ids) {
+        return findAllByIds(ids, DEFAULT_FETCH_PLAN);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query
+     */
+    @Override
+    public List<T> findAllByIds(Collection<Long> ids, FetchPlan fetchPlan) {
+        List<Long> idList = new ArrayList<>(new LinkedHashSet<>(ids)); //remove duplicates
+        boolean fullyLoaded = DEFAULT_FETCH_PLAN.equals(fetchPlan); //only fully loaded entities are kept in the map
+        Map<Long, T> foundById = new HashMap<>();
+        List<Long> idsToRead = new ArrayList<>();
+        for (Long id : idList) {
+            T entity = fullyLoaded ? identityMap.get(clazz, id) : null;
+            if (entity != null) {
+                foundById.put(id, entity);
+            } else {
+                idsToRead.add(id);
+            }
+        }
+        long generation = identityMap.getGeneration(clazz);
+        int maxInListSize = queryFactory.getMaxInListSize();
+        for (int from = 0; from < idsToRead.size(); from += maxInListSize) {
+            List<Long> chunk = idsToRead.subList(from, Math.min(from + maxInListSize, idsToRead.size()));
+            JoinedQuery searchQuery = queryFactory.getJoinedFindByIdsQuery(clazz, fetchPlan, chunk.size());
+            try (PreparedStatement statement = connection.prepareStatement(searchQuery.getQuery())) {
+                setInListParameters(statement, 1, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    for (T entity : parseResultSet(rs, searchQuery.getGraph())) {
+                        foundById.put(entity.getId(), entity);
+                        if (fullyLoaded) identityMap.put(clazz, entity, generation);
+                    }
+                }
+            } catch (SQLException exc) {
+                throw new DaoException(exc);
+            }
+        }
+        List<T> result = new ArrayList<>(foundById.size());
+        for (Long id : idList) {
+            T entity = foundById.get(id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -119,6 +262,7 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         try (PreparedStatement statement = connection.prepareStatement(updateQuery.getQuery())) {
             prepareStatementForUpdate(statement, object, updateQuery, parameters);
             int updated = statement.executeUpdate();
+            identityMap.remove(clazz, object.getId()); //after the change, so the old record can't be cached again
             if (updated > 1) {
                 throw new DaoException("Updated more than one record: " + updated);
             }
@@ -148,6 +292,7 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         try (PreparedStatement statement = connection.prepareStatement(deleteQuery.getQuery())) {
             statement.setLong(1, id);
             int deleted = statement.executeUpdate();
+            identityMap.remove(clazz, id);
             if (deleted > 1) {
                 throw new DaoException("Deleted more than 1 record");
             }
@@ -160,6 +305,32 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query
+     */
+    @Override
+    public int deleteAll(Collection<Long> ids) {
+        int deleted = 0;
+        List<Long> idList = new ArrayList<>(new LinkedHashSet<>(ids)); //remove duplicates
+        int maxInListSize = queryFactory.getMaxInListSize();
+        for (int from = 0; from < idList.size(); from += maxInListSize) {
+            List<Long> chunk = idList.subList(from, Math.min(from + maxInListSize, idList.size()));
+            String deleteQuery = queryFactory.getDeleteByIdsQuery(clazz, chunk.size());
+            try (PreparedStatement statement = connection.prepareStatement(deleteQuery)) {
+                setInListParameters(statement, 1, chunk);
+                deleted += statement.executeUpdate();
+            } catch (SQLException exc) {
+                throw new DaoException(exc);
+            }
+            for (Long id : chunk) {
+                identityMap.remove(clazz, id);
+            }
+        }
+        return deleted;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -167,18 +338,38 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
      */
     @Override
     public List<T> getAll() {
+        return getAll(DEFAULT_FETCH_PLAN);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query
+     */
+    @Override
+    public List<T> getAll(FetchPlan fetchPlan) {
         List<T> list;
-        SqlQuery readAllQuery = queryFactory.getQueryForClass(SqlQueryType.READ_ALL, clazz);
+        JoinedQuery readAllQuery = queryFactory.getJoinedQueryForClass(SqlQueryType.READ_ALL, clazz, fetchPlan);
         try (PreparedStatement statement = connection.prepareStatement(readAllQuery.getQuery());
              ResultSet rs = statement.executeQuery()) {
 
-            list = parseResultSet(rs);
+            list = parseResultSet(rs, readAllQuery.getGraph());
         } catch (SQLException exc) {
             throw new DaoException(exc);
         }
         return list;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query
+     */
+    @Override
+    public List<T> getAll(FetchPlan fetchPlan, PageRequest pageRequest) {
+        return findByParameters(Collections.emptyMap(), fetchPlan, pageRequest);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -187,31 +378,222 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
      */
     @Override
     public List<T> findByParameters(Map<String, Object> parameters) {
+        return findByParameters(parameters, DEFAULT_FETCH_PLAN);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public List<T> findByParameters(Map<String, Object> parameters, FetchPlan fetchPlan) {
+        return findByCriteria(Criteria.of(parameters), fetchPlan);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public List<T> findByCriteria(Criteria criteria) {
+        return findByCriteria(criteria, DEFAULT_FETCH_PLAN);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public List<T> findByCriteria(Criteria criteria, FetchPlan fetchPlan) {
+        List<T> list;
+        JoinedQuery searchQuery = criteria.getColumns().isEmpty()
+                ? queryFactory.getJoinedQueryForClass(SqlQueryType.READ_ALL, clazz, fetchPlan)
+                : queryFactory.getJoinedFindByParametersQuery(clazz, fetchPlan, criteria.getColumns());
+        try (PreparedStatement statement = connection.prepareStatement(searchQuery.getQuery())) {
+            int statementParameterIndex = 1;
+            for (Object obj : criteria.getValues()) {
+                statement.setObject(statementParameterIndex, obj);
+                statementParameterIndex++;
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                list = parseResultSet(rs, searchQuery.getGraph());
+            }
+        } catch (SQLException exc) {
+            throw new DaoException(exc);
+        }
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if order of the page is wrong
+     *                      or if error occurred during execute sql query.
+     */
+    @Override
+    public List<T> findByParameters(Map<String, Object> parameters, FetchPlan fetchPlan, PageRequest pageRequest) {
         List<T> list;
-        String searchQuery = queryFactory.generateFindByParametersQuery(clazz, parameters.keySet());
-        try (PreparedStatement statement = connection.prepareStatement(searchQuery)) {
+        JoinedQuery pageQuery = queryFactory.getJoinedFindPageQuery(clazz, fetchPlan,
+                new ArrayList<>(parameters.keySet()), pageRequest);
+        try (PreparedStatement statement = connection.prepareStatement(pageQuery.getQuery())) {
             int statementParameterIndex = 1;
             for (Object obj : parameters.values()) {
                 statement.setObject(statementParameterIndex, obj);
                 statementParameterIndex++;
             }
-            ResultSet rs = statement.executeQuery();
-            list = parseResultSet(rs);
-            rs.close();
+            if (pageRequest.getAfterId() != null) {
+                statement.setLong(statementParameterIndex, pageRequest.getAfterId());
+                statementParameterIndex++;
+            }
+            statement.setInt(statementParameterIndex, pageRequest.getLimit());
+            statement.setInt(statementParameterIndex + 1, pageRequest.getOffset());
+            try (ResultSet rs = statement.executeQuery()) {
+                list = parseResultSet(rs, pageQuery.getGraph());
+            }
         } catch (SQLException exc) {
             throw new DaoException(exc);
         }
         return list;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query,
+     *                      errors during reading of the stream are thrown as DaoException as well
+     */
+    @Override
+    public Stream<T> stream(Map<String, Object> parameters, FetchPlan fetchPlan, int fetchSize) {
+        //dependencies can't be read by separate query while the cursor is open
+        FetchPlan cursorPlan = fetchPlan.stubNotJoined();
+        JoinedQuery searchQuery = parameters.isEmpty()
+                ? queryFactory.getJoinedQueryForClass(SqlQueryType.READ_ALL, clazz, cursorPlan)
+                : queryFactory.getJoinedFindByParametersQuery(clazz, cursorPlan, new ArrayList<>(parameters.keySet()));
+        PreparedStatement statement = connection.prepareStatement(searchQuery.getQuery(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            int statementParameterIndex = 1;
+            for (Object obj : parameters.values()) {
+                statement.setObject(statementParameterIndex, obj);
+                statementParameterIndex++;
+            }
+            statement.setFetchSize(queryFactory.getDialect().getStreamFetchSize(fetchSize));
+            ResultSet rs = statement.executeQuery();
+            Iterator<T> iterator = new ResultSetIterator(statement, rs, searchQuery.getGraph().getRowMapper(rs));
+            Spliterator<T> spliterator =
+                    Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(() -> closeStatement(statement));
+        } catch (SQLException exc) {
+            closeStatement(statement);
+            throw new DaoException(exc);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public void forEach(Map<String, Object> parameters, FetchPlan fetchPlan, Consumer<? super T> action) {
+        try (Stream<T> stream = stream(parameters, fetchPlan, DEFAULT_FETCH_SIZE)) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public long count(Map<String, Object> parameters) {
+        String countQuery = queryFactory.getCountByParametersQuery(clazz, new ArrayList<>(parameters.keySet()));
+        try (PreparedStatement statement = connection.prepareStatement(countQuery)) {
+            int statementParameterIndex = 1;
+            for (Object obj : parameters.values()) {
+                statement.setObject(statementParameterIndex, obj);
+                statementParameterIndex++;
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) throw new DaoException("Count query returned no rows");
+                return rs.getLong(1);
+            }
+        } catch (SQLException exc) {
+            throw new DaoException(exc);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<T> findByParameter(String paramName, Object paramValue) {
-        Map<String, Object> map = new HashMap<>();
-        map.put(paramName, paramValue);
-        return findByParameters(map);
+        return findByParameter(paramName, paramValue, DEFAULT_FETCH_PLAN);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByParameter(String paramName, Object paramValue, FetchPlan fetchPlan) {
+        List<T> list;
+        JoinedQuery searchQuery =
+                queryFactory.getJoinedFindByParametersQuery(clazz, fetchPlan, Collections.singletonList(paramName));
+        try (PreparedStatement statement = connection.prepareStatement(searchQuery.getQuery())) {
+            statement.setObject(1, paramValue);
+            try (ResultSet rs = statement.executeQuery()) {
+                list = parseResultSet(rs, searchQuery.getGraph());
+            }
+        } catch (SQLException exc) {
+            throw new DaoException(exc);
+        }
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> findByParameter(String paramName, Object paramValue, FetchPlan fetchPlan,
+                                   PageRequest pageRequest) {
+        return findByParameters(Collections.singletonMap(paramName, paramValue), fetchPlan, pageRequest);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DaoException if error occurred during execute sql query.
+     */
+    @Override
+    public Map<Long, List<T>> findGroupedByParameter(String paramName, Collection<Long> paramValues) {
+        Map<Long, List<T>> groupedResult = new LinkedHashMap<>();
+        List<Long> values = new ArrayList<>(new LinkedHashSet<>(paramValues)); //remove duplicates
+        int maxInListSize = queryFactory.getMaxInListSize();
+        for (int from = 0; from < values.size(); from += maxInListSize) {
+            List<Long> chunk = values.subList(from, Math.min(from + maxInListSize, values.size()));
+            JoinedQuery searchQuery = queryFactory.generateJoinedFindByParameterValuesQuery(
+                    clazz, DEFAULT_FETCH_PLAN, paramName, queryFactory.getInListSize(chunk.size()));
+            try (PreparedStatement statement = connection.prepareStatement(searchQuery.getQuery())) {
+                setInListParameters(statement, 1, chunk);
+                try (ResultSet rs = statement.executeQuery()) {
+                    RowMapper rowMapper = searchQuery.getGraph().getRowMapper(rs);
+                    int groupKeyPosition = rs.findColumn(paramName); //columns of the main table are not labeled
+                    while (rs.next()) {
+                        T entity = readRow(rs, rowMapper);
+                        if (entity == null) continue;
+                        Long groupKey = rs.getLong(groupKeyPosition);
+                        groupedResult.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(entity);
+                    }
+                }
+            } catch (SQLException exc) {
+                throw new DaoException(exc);
+            }
+        }
+        return groupedResult;
     }
 
     /**
@@ -239,9 +621,12 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         int statementParameterIndex = 1;
         for (DatabaseColumn column : query.getParameters()) {
             String fieldName = column.getFieldName();
+            int fieldIndex = entityManager.getFieldIndex(fieldName);
             Object valueToSet;
-            if (entityManager.hasField(fieldName)) {
-                valueToSet = entityManager.invokeGetter(fieldName, entity);
+            if (fieldIndex >= 0) {
+                //dependency is read bypassing the getter, so the lazy reference isn't loaded only to get its id
+                valueToSet = column.isForeignKey() ? entityManager.readField(fieldIndex, entity)
+                        : entityManager.invokeGetter(fieldIndex, entity);
                 if (column.isForeignKey() && valueToSet != null) {
                     //try to get id from dependency entity
                     Long dependencyID = ((BaseEntity) valueToSet).getId();
@@ -266,42 +651,84 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
 
     /**
      * Gets values from {@link java.sql.ResultSet} and creates objects using them
-     * if entity contains other non-primitive objects,
-     * then calls specific dao of it class and read it.
+     * if entity contains other non-primitive objects, then reads them from
+     * the same row if their tables are joined in the graph,
+     * otherwise calls specific dao of it class and read it.
      *
-     * @param rs is the {@link java.sql.ResultSet}
+     * @param rs    is the {@link java.sql.ResultSet}
+     * @param graph describes tables and column labels in the result set
      * @return List of objects
      * @throws SQLException
      * @throws DaoException if there problems with instance
      *                      object or access to it getters or setter
      */
-    protected List<T> parseResultSet(ResultSet rs) throws SQLException {
+    protected List<T> parseResultSet(ResultSet rs, EntityGraph graph) throws SQLException {
         List<T> resultList = new ArrayList<>();
+        RowMapper rowMapper = graph.getRowMapper(rs);
         while (rs.next()) {
-            try {
-                T entity = entityManager.getEntityClass().newInstance(); //creating new object
-                Long id = rs.getLong(table.getPrimaryKeyName()); //getting object's id from result set
-                entity.setId(id);
-                //for each column in table get value from rs and set it to entity if entity has such field
-                for (DatabaseColumn column : table.getColumns()) {
-                    String columnName = column.getName();
-                    String fieldName = column.getFieldName();
-                    if (!entityManager.hasField(fieldName)) continue;
-                    Object valueToSet;
-                    if (column.isForeignKey()) {
-                        Long dependencyEntityID = rs.getLong(columnName); //getting dependency id
-                        valueToSet = readDependency(fieldName, dependencyEntityID);//call another dao to read dependency
-                    } else {
-                        valueToSet = rs.getObject(columnName);
-                    }
-                    entityManager.invokeSetterByFieldName(fieldName, entity, valueToSet); //set value to entity
+            T entity = readRow(rs, rowMapper);
+            if (entity != null) resultList.add(entity);
+        }
+        return resultList;
+    }
+
+    /**
+     * Creates entity from the current row of the result set.
+     * Special dao can override this method to read entity in its own way.
+     *
+     * @param rowMapper knows positions of the graph columns in the result set
+     * @return created entity or null if the row has to be skipped
+     */
+    @SuppressWarnings("unchecked")
+    protected T readRow(ResultSet rs, RowMapper rowMapper) throws SQLException {
+        return (T) readEntity(rs, rowMapper, rowMapper.getGraph().getRoot());
+    }
+
+    /**
+     * Creates entity of the node from the current row of the result set
+     * and recursively creates all joined dependencies.
+     *
+     * @return created entity or null if the node is joined dependency
+     * and there is no such record
+     */
+    private BaseEntity readEntity(ResultSet rs, RowMapper rowMapper, EntityGraph.Node node) throws SQLException {
+        RowMapper.NodeMapper nodeMapper = rowMapper.getNodeMapper(node);
+        Long id = nodeMapper.readId(rs); //getting object's id from result set
+        if (id == null) return null; //joined record is absent or deleted
+        EntityManager<? extends BaseEntity> nodeManager = node.getEntityManager();
+        BaseEntity entity = nodeManager.newInstance(); //creating new object
+        entity.setId(id);
+        //for each column in table get value from rs and set it to entity if entity has such not excluded field
+        List<DatabaseColumn> columns = node.getColumns();
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            int fieldIndex = node.getFieldIndex(columnIndex);
+            if (fieldIndex < 0) continue;
+            DatabaseColumn column = columns.get(columnIndex);
+            String fieldName = column.getFieldName();
+            Object valueToSet;
+            if (column.isForeignKey()) {
+                EntityGraph.Node dependencyNode = node.getJoinedDependency(fieldName);
+                if (dependencyNode != null) {
+                    valueToSet = readEntity(rs, rowMapper, dependencyNode); //dependency is in the same row
+                } else if (node.isStubDependency(fieldName)) {
+                    Long dependencyEntityID = (Long) nodeMapper.readValue(rs, columnIndex);
+                    valueToSet = createStub(nodeManager.getFieldType(fieldName), dependencyEntityID);
+                } else if (node.isLazyDependency(fieldName)) {
+                    Long dependencyEntityID = (Long) nodeMapper.readValue(rs, columnIndex);
+                    BaseEntity reference = createStub(nodeManager.getFieldType(fieldName), dependencyEntityID);
+                    if (reference != null) reference.markAsLazyReference(daoSession.getLazyLoader());
+                    valueToSet = reference;
+                } else {
+                    Long dependencyEntityID = (Long) nodeMapper.readValue(rs, columnIndex); //getting dependency id
+                    //call another dao to read dependency
+                    valueToSet = readDependency(nodeManager.getFieldType(fieldName), dependencyEntityID);
                 }
-                resultList.add(entity);
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new DaoException(e);
+            } else {
+                valueToSet = nodeMapper.readValue(rs, columnIndex);
             }
+            nodeManager.invokeSetter(fieldIndex, entity, valueToSet); //set value to entity
         }
-        return resultList;
+        return entity;
     }
 
     /**
@@ -323,6 +750,26 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         statement.setLong(idParameterIndex, entity.getId());
     }
 
+    /**
+     * Sets values of the IN list starting from the specified parameter index,
+     * list is padded to {@link SqlQueryFactory#getInListSize} by repeating the last value
+     */
+    private void setInListParameters(PreparedStatement statement, int firstParameterIndex, List<Long> values)
+            throws SQLException {
+        int inListSize = queryFactory.getInListSize(values.size());
+        for (int i = 0; i < inListSize; i++) {
+            statement.setLong(firstParameterIndex + i, values.get(Math.min(i, values.size() - 1)));
+        }
+    }
+
+    private void closeStatement(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("Error while closing cursor statement", e);
+        }
+    }
+
     /**
      * Delete all entities which contains in entity-parameter
      * if such are exist
@@ -335,7 +782,7 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
             String fieldName = column.getFieldName();
             if (!entityManager.hasField(fieldName)) continue;
             if (column.isForeignKey()) {
-                BaseEntity entityToDelete = (BaseEntity) entityManager.invokeGetter(fieldName, entity); //get entity
+                BaseEntity entityToDelete = (BaseEntity) entityManager.readField(fieldName, entity); //only id is needed
                 Class type = entityManager.getFieldType(fieldName); //get entity type
                 if (!BaseEntity.class.isAssignableFrom(type)) {
                     throw new DaoException("Trying to get dao with type which not extends BaseEntity");
@@ -346,24 +793,87 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         }
     }
 
+    /**
+     * Creates dependency object which has only id,
+     * needs when dependency is loaded partially
+     *
+     * @param type               of the dependency
+     * @param dependencyEntityID value of the foreign key
+     * @return object with id or null if foreign key is null
+     */
+    private BaseEntity createStub(Class<?> type, Long dependencyEntityID) {
+        if (dependencyEntityID == null) return null;
+        if (!BaseEntity.class.isAssignableFrom(type)) {
+            throw new DaoException("Trying to create stub with type which not extends BaseEntity");
+        }
+        BaseEntity stub = EntityManager.getManager(type.asSubclass(BaseEntity.class)).newInstance();
+        stub.setId(dependencyEntityID);
+        return stub;
+    }
+
     /**
      * Reads entity from another table, this method needs when
-     * parsing result set and there foreign keys.
-     * This method gets type of dependency within metadata by field name
-     * and then via DAO of this type trying to find entity
+     * parsing result set and there foreign keys which are not joined.
+     * At first the entity is searched in the identity map of the session,
+     * then this method gets DAO of the dependency type and via it trying to find entity
      *
-     * @param fieldName field name of dependency which need to be read
+     * @param type of the dependency which need to be read
      * @return Found object as {@link com.epam.store.model.BaseEntity}
      */
-    private BaseEntity readDependency(String fieldName, Long dependencyEntityID) {
-        Class type = entityManager.getFieldType(fieldName);
+    private BaseEntity readDependency(Class<?> type, Long dependencyEntityID) {
+        if (dependencyEntityID == null) return null;
         if (!BaseEntity.class.isAssignableFrom(type)) {
             throw new DaoException("Trying to get dao with type which not extends BaseEntity");
         }
-        Dao dao = daoSession.getDao(type);
+        BaseEntity dependency = identityMap.get(type.asSubclass(BaseEntity.class), dependencyEntityID);
+        if (dependency != null) return dependency;
+        Dao dao = daoSession.getDao(type.asSubclass(BaseEntity.class));
         return dao.find(dependencyEntityID);
     }
 
+    /**
+     * Inserts by batch all dependencies of the objects which have no id yet.
+     * The same dependency object which is shared by several objects is inserted once.
+     */
+    private void insertNewDependencies(List<T> objects) {
+        SqlQuery insertQuery = queryFactory.getQueryForClass(SqlQueryType.INSERT, clazz);
+        for (DatabaseColumn column : insertQuery.getParameters()) {
+            String fieldName = column.getFieldName();
+            if (!column.isForeignKey() || !entityManager.hasField(fieldName)) continue;
+            Set<BaseEntity> newDependencies = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (T object : objects) {
+                BaseEntity dependency = (BaseEntity) entityManager.readField(fieldName, object);
+                if (dependency != null && dependency.getId() == null) newDependencies.add(dependency);
+            }
+            if (newDependencies.isEmpty()) continue;
+            Class<?> type = entityManager.getFieldType(fieldName);
+            if (!BaseEntity.class.isAssignableFrom(type)) {
+                throw new DaoException("Trying to get DAO with type which not extends BaseEntity");
+            }
+            insertAllDependencies(type.asSubclass(BaseEntity.class), newDependencies);
+        }
+    }
+
+    private <D extends BaseEntity> void insertAllDependencies(Class<D> type, Collection<BaseEntity> dependencies) {
+        List<D> typedDependencies = new ArrayList<>(dependencies.size());
+        for (BaseEntity dependency : dependencies) {
+            typedDependencies.add(type.cast(dependency));
+        }
+        daoSession.getDao(type).insertAll(typedDependencies, new HashMap<>());
+    }
+
+    private boolean isGeneratedKeysSupported() {
+        return queryFactory.getDialect().supportsGeneratedKeys();
+    }
+
+    /**
+     * Not every driver returns generated keys of all records of the batch,
+     * for example H2 returns only the key of the last record
+     */
+    private boolean isBatchGeneratedKeysSupported() {
+        return queryFactory.getDialect().supportsBatchGeneratedKeys();
+    }
+
     /**
      * Gets type of the entity's field and gets DAO by this type.
      * Then DAO is used to insert another entity
@@ -381,4 +891,47 @@ class JdbcDao<T extends BaseEntity> implements Dao<T> {
         BaseEntity baseEntityToInsert = (BaseEntity) entityToInsert;
         return dao.insert(baseEntityToInsert);
     }
+
+    /**
+     * Reads entities from the cursor one by one, rows which are skipped by {@link #readRow} are omitted.
+     * Statement is closed as soon as the last row is read.
+     */
+    private class ResultSetIterator implements Iterator<T> {
+        private final Statement statement;
+        private final ResultSet rs;
+        private final RowMapper rowMapper;
+        private T next;
+        private boolean finished;
+
+        private ResultSetIterator(Statement statement, ResultSet rs, RowMapper rowMapper) {
+            this.statement = statement;
+            this.rs = rs;
+            this.rowMapper = rowMapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && !finished) {
+                    if (rs.next()) {
+                        next = readRow(rs, rowMapper);
+                    } else {
+                        finished = true;
+                        closeStatement(statement);
+                    }
+                }
+            } catch (SQLException exc) {
+                throw new DaoException(exc);
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T entity = next;
+            next = null;
+            return entity;
+        }
+    }
 }
@@ -4,10 +4,14 @@ import com.epam.store.dbpool.ConnectionPool;
 import com.epam.store.dbpool.SqlPooledConnection;
 import com.epam.store.metadata.DBMetadataManager;
 import com.epam.store.model.BaseEntity;
+import com.epam.store.model.LazyLoader;
+import com.google.common.cache.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.Map;
 
 public class JdbcDaoFactory implements DaoFactory {
     private static final Logger log = LoggerFactory.getLogger(JdbcDao.class);
@@ -15,22 +19,49 @@ public class JdbcDaoFactory implements DaoFactory {
     private DBMetadataManager dbMetadataManager;
     private SqlQueryFactory sqlQueryFactory;
     private DaoRegistry daoRegistry;
+    private EntityCache entityCache;
 
     public JdbcDaoFactory(ConnectionPool cp) {
         this.cp = cp;
         try (SqlPooledConnection connection = cp.getConnection()) {
-            dbMetadataManager = new DBMetadataManager(connection.getMetaData());
-            sqlQueryFactory = new SqlQueryFactory(dbMetadataManager);
+            DatabaseMetaData metaData = connection.getMetaData();
+            Dialect dialect = Dialect.forDatabase(metaData);
+            log.info("Using dialect " + dialect);
+            for (String hint : dialect.getConnectionHints(getUrl(metaData))) {
+                log.warn(hint);
+            }
+            dbMetadataManager =
+                    new DBMetadataManager(metaData, dialect.getCatalog(metaData), dialect.getSchema(metaData));
+            sqlQueryFactory = new SqlQueryFactory(dbMetadataManager, dialect);
         }
         daoRegistry = new DaoRegistry();
+        entityCache = new EntityCache();
     }
 
     public DaoSession getDaoSession() {
         return new JdbcDaoSession(cp.getConnection());
     }
 
+    /**
+     * @return hit and miss statistics of the second-level entity cache by simple names of the entity classes
+     */
+    public Map<String, CacheStats> getEntityCacheStatistics() {
+        return entityCache.getStatistics();
+    }
+
+    private String getUrl(DatabaseMetaData metaData) {
+        try {
+            return metaData.getURL();
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
     private class JdbcDaoSession implements DaoSession {
         private SqlPooledConnection connection;
+        private volatile boolean closed;
+        private LazyLoader lazyLoader;
+        private final IdentityMap identityMap = new IdentityMap(entityCache);
 
         public JdbcDaoSession(SqlPooledConnection connection) {
             this.connection = connection;
@@ -47,6 +78,7 @@ public class JdbcDaoFactory implements DaoFactory {
         public void beginTransaction() {
             try {
                 connection.setAutoCommit(false);
+                identityMap.beginTransaction();
             } catch (SQLException e) {
                 log.error("Error on start transaction");
             }
@@ -57,6 +89,7 @@ public class JdbcDaoFactory implements DaoFactory {
             try {
                 connection.commit();
                 connection.setAutoCommit(true);
+                identityMap.endTransaction(true);
             } catch (SQLException e) {
                 log.error("End of the transaction has been failed", e);
                 try {
@@ -64,17 +97,56 @@ public class JdbcDaoFactory implements DaoFactory {
                 } catch (SQLException exc) {
                     log.error("Error while rollback", e);
                 }
+                identityMap.endTransaction(false);
             }
         }
 
         @Override
         public void close() {
-            connection.close();
+            closed = true;
+            connection.close(); //not ended transaction is rolled back
+            identityMap.endTransaction(false);
+            identityMap.clear();
         }
 
         @Override
         public SqlPooledConnection getConnection() {
             return connection;
         }
+
+        @Override
+        public LazyLoader getLazyLoader() {
+            if (lazyLoader == null) lazyLoader = new SessionLazyLoader(this);
+            return lazyLoader;
+        }
+
+        @Override
+        public IdentityMap getIdentityMap() {
+            return identityMap;
+        }
+    }
+
+    /**
+     * Loads lazy references through the session in which they were read,
+     * so the loading doesn't take another connection from the pool while that
+     * session is open. After closing of the session (for example, when the
+     * reference is accessed from JSP) the new session is opened for each loading.
+     */
+    private class SessionLazyLoader implements LazyLoader {
+        private final JdbcDaoSession daoSession;
+
+        private SessionLazyLoader(JdbcDaoSession daoSession) {
+            this.daoSession = daoSession;
+        }
+
+        @Override
+        public <T extends BaseEntity> T load(Class<T> type, long id) {
+            if (!daoSession.closed) {
+                return daoSession.getDao(type).find(id);
+            }
+            try (DaoSession session = getDaoSession()) {
+                return session.getDao(type).find(id);
+            }
+        }
     }
 }
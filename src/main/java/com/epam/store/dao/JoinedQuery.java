@@ -0,0 +1,51 @@
+package com.epam.store.dao;
+
+import com.epam.store.metadata.DatabaseColumn;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Select query which reads entity together with its joined dependencies,
+ * contains {@link EntityGraph} for reading entities from the result set
+ */
+class JoinedQuery implements SqlQuery {
+    private final String query;
+    private final EntityGraph graph;
+    private final List<DatabaseColumn> parameters;
+
+    JoinedQuery(String query, EntityGraph graph, List<DatabaseColumn> parameters) {
+        this.query = query;
+        this.graph = graph;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public String getTableName() {
+        return graph.getRoot().getTable().getName();
+    }
+
+    @Override
+    public List<DatabaseColumn> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public int getParameterAmount() {
+        return parameters.size();
+    }
+
+    public EntityGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
@@ -0,0 +1,62 @@
+package com.epam.store.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dialect of the MySQL database, application tables are in the current database,
+ * which is a catalog for the driver
+ */
+class MySqlDialect extends StandardDialect {
+    static final String PRODUCT_NAME = "MySQL";
+    private static final String LAST_INSERT_ID_FUNCTION = "LAST_INSERT_ID()";
+    private static final String REWRITE_BATCHED_STATEMENTS_PROPERTY = "rewriteBatchedStatements=true";
+    private static final String USE_CURSOR_FETCH_PROPERTY = "useCursorFetch=true";
+    private static final int ROW_BY_ROW_FETCH_SIZE = Integer.MIN_VALUE;
+    private final boolean cursorFetchUsed;
+
+    /**
+     * @param url of the database connection, it's checked for {@link #USE_CURSOR_FETCH_PROPERTY}
+     */
+    MySqlDialect(boolean generatedKeysSupported, String url) {
+        super(PRODUCT_NAME, generatedKeysSupported);
+        cursorFetchUsed = url.contains(USE_CURSOR_FETCH_PROPERTY);
+    }
+
+    /**
+     * Driver returns keys of all records inserted by the batch,
+     * even if the batch is rewritten to one multi-row insert
+     */
+    @Override
+    public boolean supportsBatchGeneratedKeys() {
+        return true;
+    }
+
+    @Override
+    public String getLastInsertIdFunction() {
+        return LAST_INSERT_ID_FUNCTION;
+    }
+
+    /**
+     * Without cursor fetch the driver ignores fetch size and reads the whole result,
+     * unless the fetch size is {@link Integer#MIN_VALUE}, then the result is streamed row by row
+     */
+    @Override
+    public int getStreamFetchSize(int fetchSize) {
+        return cursorFetchUsed ? fetchSize : ROW_BY_ROW_FETCH_SIZE;
+    }
+
+    @Override
+    public List<String> getConnectionHints(String url) {
+        List<String> hints = new ArrayList<>();
+        if (!url.contains(REWRITE_BATCHED_STATEMENTS_PROPERTY)) {
+            hints.add("Add " + REWRITE_BATCHED_STATEMENTS_PROPERTY
+                    + " to the url, so batch inserts are sent as one multi-row insert");
+        }
+        if (!url.contains(USE_CURSOR_FETCH_PROPERTY)) {
+            hints.add("Add " + USE_CURSOR_FETCH_PROPERTY
+                    + " to the url, otherwise streamed results block the connection until they are read");
+        }
+        return hints;
+    }
+}
@@ -0,0 +1,103 @@
+package com.epam.store.dao;
+
+/**
+ * Describes which part of the found records is read and in which order.
+ * Records are ordered by the primary key if the order column is not specified,
+ * otherwise the primary key is added as the last order column, so the order is always stable.
+ * Page is defined either by offset or by the id after which records are read (keyset pagination).
+ * Keyset pagination doesn't scan skipped records, but it's supported only with the order by primary key.
+ * Request is immutable, its methods return new request.
+ */
+public class PageRequest {
+    private final int limit;
+    private final int offset;
+    private final String orderColumn;
+    private final boolean descending;
+    private final Long afterId;
+
+    private PageRequest(int limit, int offset, String orderColumn, boolean descending, Long afterId) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive: " + limit);
+        if (offset < 0) throw new IllegalArgumentException("Offset can't be negative: " + offset);
+        this.limit = limit;
+        this.offset = offset;
+        this.orderColumn = orderColumn;
+        this.descending = descending;
+        this.afterId = afterId;
+    }
+
+    /**
+     * @param pageIndex zero-based index of the page
+     * @param pageSize  max amount of records on the page
+     */
+    public static PageRequest page(int pageIndex, int pageSize) {
+        return new PageRequest(pageSize, pageIndex * pageSize, null, false, null);
+    }
+
+    /**
+     * @param limit max amount of the first records to read
+     */
+    public static PageRequest first(int limit) {
+        return new PageRequest(limit, 0, null, false, null);
+    }
+
+    /**
+     * @param columnName name of the column of the main table to sort in ascending order
+     */
+    public PageRequest orderBy(String columnName) {
+        return new PageRequest(limit, offset, columnName, false, afterId);
+    }
+
+    /**
+     * @param columnName name of the column of the main table to sort in descending order
+     */
+    public PageRequest orderByDescending(String columnName) {
+        return new PageRequest(limit, offset, columnName, true, afterId);
+    }
+
+    /**
+     * Makes keyset request, which reads records following the record with specified id
+     * in the order by primary key, offset is ignored
+     *
+     * @param id of the last record of the previous page
+     */
+    public PageRequest after(long id) {
+        return new PageRequest(limit, 0, orderColumn, descending, id);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return name of the order column or null if records are ordered by primary key
+     */
+    public String getOrderColumn() {
+        return orderColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return id after which records are read or null if page is defined by offset
+     */
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest{" +
+                "limit=" + limit +
+                ", offset=" + offset +
+                ", orderColumn='" + orderColumn + '\'' +
+                ", descending=" + descending +
+                ", afterId=" + afterId +
+                '}';
+    }
+}
@@ -0,0 +1,155 @@
+package com.epam.store.dao;
+
+import com.epam.store.metadata.DatabaseColumn;
+import com.epam.store.metadata.EntityManager;
+import com.epam.store.model.BaseEntity;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Knows positions of the columns of all {@link EntityGraph} nodes in the result set
+ * and the typed getter for each of them. Positions are resolved from
+ * {@link ResultSetMetaData} once, when mapper is created, so reading of the row
+ * doesn't look up columns by name. Mapper is cached in the graph, because
+ * all queries of the graph have the same select list.
+ */
+class RowMapper {
+    private final EntityGraph graph;
+    private final Map<EntityGraph.Node, NodeMapper> nodeMappers = new IdentityHashMap<>();
+
+    RowMapper(EntityGraph graph, ResultSetMetaData metaData) throws SQLException {
+        this.graph = graph;
+        Map<String, Integer> positionByLabel = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int position = metaData.getColumnCount(); position > 0; position--) {
+            positionByLabel.put(metaData.getColumnLabel(position), position); //first column wins for same labels
+        }
+        addNodeMappers(graph.getRoot(), positionByLabel);
+    }
+
+    public EntityGraph getGraph() {
+        return graph;
+    }
+
+    public NodeMapper getNodeMapper(EntityGraph.Node node) {
+        return nodeMappers.get(node);
+    }
+
+    private void addNodeMappers(EntityGraph.Node node, Map<String, Integer> positionByLabel) {
+        nodeMappers.put(node, new NodeMapper(node, positionByLabel));
+        for (EntityGraph.Node dependencyNode : node.getJoinedDependencies().values()) {
+            addNodeMappers(dependencyNode, positionByLabel);
+        }
+    }
+
+    /**
+     * Positions and getters of the columns of one node
+     */
+    static class NodeMapper {
+        private static final int ABSENT_POSITION = 0;
+        private final int primaryKeyPosition;
+        private final int[] positions;
+        private final ColumnReader[] readers;
+
+        private NodeMapper(EntityGraph.Node node, Map<String, Integer> positionByLabel) {
+            primaryKeyPosition = getPosition(positionByLabel, node.getPrimaryKeyLabel());
+            List<DatabaseColumn> columns = node.getColumns();
+            EntityManager<? extends BaseEntity> entityManager = node.getEntityManager();
+            positions = new int[columns.size()];
+            readers = new ColumnReader[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                DatabaseColumn column = columns.get(i);
+                if (node.getFieldIndex(i) < 0) {
+                    //column is not read as a field, but special dao can read it if it's selected
+                    positions[i] = positionByLabel.getOrDefault(node.getLabel(column), ABSENT_POSITION);
+                    continue;
+                }
+                positions[i] = getPosition(positionByLabel, node.getLabel(column));
+                readers[i] = column.isForeignKey()
+                        ? ResultSetReaders.LONG
+                        : ResultSetReaders.forType(entityManager.getFieldType(column.getFieldName()));
+            }
+        }
+
+        /**
+         * @return id of the node entity or null if there is no such record
+         */
+        public Long readId(ResultSet rs) throws SQLException {
+            return (Long) ResultSetReaders.LONG.read(rs, primaryKeyPosition);
+        }
+
+        /**
+         * @param columnIndex index of the column in {@link EntityGraph.Node#getColumns()}
+         */
+        public Object readValue(ResultSet rs, int columnIndex) throws SQLException {
+            return readers[columnIndex].read(rs, positions[columnIndex]);
+        }
+
+        /**
+         * @param columnIndex index of the column in {@link EntityGraph.Node#getColumns()}
+         * @return position of the column in the result set, it's needed to read columns
+         * which are not entity fields
+         * @throws DaoException if the column is not selected
+         */
+        public int getPosition(int columnIndex) {
+            int position = positions[columnIndex];
+            if (position == ABSENT_POSITION) throw new DaoException("Column " + columnIndex + " is not selected");
+            return position;
+        }
+
+        private static int getPosition(Map<String, Integer> positionByLabel, String label) {
+            Integer position = positionByLabel.get(label);
+            if (position == null) throw new DaoException("Column " + label + " is absent in the result set");
+            return position;
+        }
+    }
+
+    interface ColumnReader {
+        Object read(ResultSet rs, int position) throws SQLException;
+    }
+
+    /**
+     * Typed getters of the result set, each of them returns null for SQL NULL
+     */
+    private static class ResultSetReaders {
+        private static final ColumnReader LONG = (rs, position) -> {
+            long value = rs.getLong(position);
+            return rs.wasNull() ? null : value;
+        };
+        private static final ColumnReader INTEGER = (rs, position) -> {
+            int value = rs.getInt(position);
+            return rs.wasNull() ? null : value;
+        };
+        private static final ColumnReader BOOLEAN = (rs, position) -> {
+            boolean value = rs.getBoolean(position);
+            return rs.wasNull() ? null : value;
+        };
+        private static final ColumnReader STRING = ResultSet::getString;
+        private static final ColumnReader DECIMAL = ResultSet::getBigDecimal;
+        private static final ColumnReader BYTES = ResultSet::getBytes;
+        private static final ColumnReader TIMESTAMP = ResultSet::getTimestamp;
+        private static final ColumnReader OBJECT = ResultSet::getObject;
+        private static final Map<Class<?>, ColumnReader> readerByType = new HashMap<>();
+
+        static {
+            readerByType.put(Long.class, LONG);
+            readerByType.put(long.class, LONG);
+            readerByType.put(Integer.class, INTEGER);
+            readerByType.put(int.class, INTEGER);
+            readerByType.put(Boolean.class, BOOLEAN);
+            readerByType.put(boolean.class, BOOLEAN);
+            readerByType.put(String.class, STRING);
+            readerByType.put(BigDecimal.class, DECIMAL);
+            readerByType.put(byte[].class, BYTES);
+            readerByType.put(Timestamp.class, TIMESTAMP);
+        }
+
+        private static ColumnReader forType(Class<?> fieldType) {
+            return readerByType.getOrDefault(fieldType, OBJECT);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.epam.store.dao;
 import com.epam.store.metadata.DBMetadataManager;
 import com.epam.store.metadata.DatabaseColumn;
 import com.epam.store.metadata.DatabaseTable;
-import com.epam.store.metadata.NameFormatter;
 import com.epam.store.model.BaseEntity;
 import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
@@ -13,8 +12,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
@@ -26,79 +30,307 @@ public class SqlQueryFactory {
     private static final Logger log = LoggerFactory.getLogger(SqlQueryFactory.class);
     private static final String QUERY_FILE_NAME = "query.properties";
     private static final String FIND_BY_PARAMETERS_QUERY_NAME = "FIND_BY_PARAMETERS";
+    private static final String FIND_BY_PARAMETER_VALUES_QUERY_NAME = "FIND_BY_PARAMETER_VALUES";
+    private static final String DELETE_BY_IDS_QUERY_NAME = "DELETE_BY_IDS";
+    private static final String FIND_PAGE_QUERY_NAME = "FIND_PAGE";
+    private static final String COUNT_BY_PARAMETERS_QUERY_NAME = "COUNT_BY_PARAMETERS";
+    private static final String ASCENDING_ORDER = " ASC";
+    private static final String DESCENDING_ORDER = " DESC";
+    private static final String SELECT_WITH_JOINS_QUERY_NAME = "SELECT_WITH_JOINS";
+    private static final String LEFT_JOIN_QUERY_NAME = "LEFT_JOIN";
+    private static final String JOINED_QUERY_PREFIX = "JOINED_";
     private static final String DELETED_COLUMN_NAME = "DELETED";
     private static final String SEARCH_QUERY_PARAMETERS_SEPARATOR = " AND ";
     private static final String COMMA = ", ";
     private static final String WILDCARD = " ? ";
-    private ConcurrentTable<DatabaseTable, SqlQueryType, SqlQuery> queryCache = new ConcurrentTable<>();
+    private static final SqlQueryType[] QUERY_TYPES = SqlQueryType.values();
+    private final Map<String, QueryPlan> plansByTableName;
+    private final ConcurrentMap<Class<?>, QueryPlan> plansByClass = new ConcurrentHashMap<>();
     private Properties queries;
     private DBMetadataManager dbMetadataManager;
+    private FetchPlanner fetchPlanner;
+    private final Dialect dialect;
 
-
-    public SqlQueryFactory(DBMetadataManager dbMetadataManager) {
+    public SqlQueryFactory(DBMetadataManager dbMetadataManager, Dialect dialect) {
         this.dbMetadataManager = dbMetadataManager;
+        this.dialect = dialect;
         queries = new Properties();
         try (InputStream inputStream = SqlQueryFactory.class.getClassLoader().getResourceAsStream(QUERY_FILE_NAME)) {
             queries.load(inputStream);
         } catch (IOException e) {
             throw new DaoException("Error reading sql query file", e);
         }
+        fetchPlanner = new FetchPlanner(dbMetadataManager,
+                queries.getProperty(SELECT_WITH_JOINS_QUERY_NAME), queries.getProperty(LEFT_JOIN_QUERY_NAME));
+        plansByTableName = createQueryPlans();
     }
 
     /**
-     * Generates query of specified type,
-     * the table name in query shall be taken from class.
-     * Caches all generated queries.
+     * Gets query of specified type for the table of the class.
+     * Queries of all types are generated for all tables on creation of the factory,
+     * so getting of the query doesn't generate anything.
      *
      * @param type        of query
      * @param entityClass - some entity class which collates with database table
      *                    needs to take table name from class name
-     * @return Parametrized SQL query for Prepared Statement
+     * @return Parametrized SQL query for Prepared Statement, or null for {@link SqlQueryType#READ_LAST}
+     * if the dialect has no function which returns the last inserted id
+     * @throws DaoException if table of the class has no primary key
      */
     public SqlQuery getQueryForClass(SqlQueryType type, Class<? extends BaseEntity> entityClass) {
-        DatabaseTable databaseTable = dbMetadataManager.getTableForClass(entityClass);
-        if (queryCache.contains(databaseTable, type)) {
-            log.debug("Query from cache for table: " + databaseTable.getName() + ", with type " + type.name());
-            return queryCache.get(databaseTable, type);
-        }
-        SqlQuery sqlQuery = generateQuery(type, databaseTable);
-        queryCache.put(databaseTable, type, sqlQuery);
-        return sqlQuery;
+        return getQueryPlan(entityClass).get(type);
+    }
+
+    Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * @return max amount of the values in one IN list, longer lists are split into chunks
+     */
+    int getMaxInListSize() {
+        return dialect.getMaxInListSize();
+    }
+
+    /**
+     * IN lists have only sizes which are powers of two, list of values is padded
+     * by repeating its last value, so there are few different queries
+     * and their prepared statements are reused
+     *
+     * @param valuesAmount amount of the values, not greater than {@link #getMaxInListSize()}
+     * @return size of the IN list for such amount of values
+     */
+    int getInListSize(int valuesAmount) {
+        if (valuesAmount <= 1) return 1;
+        return Math.min(Integer.highestOneBit(valuesAmount - 1) << 1, getMaxInListSize());
+    }
+
+    /**
+     * Gets query which finds records by the list of ids, the entity is read together
+     * with dependencies joined according to the fetch plan. Queries are cached by the size of the IN list.
+     *
+     * @param entityClass - some entity class which collates with database table
+     * @param fetchPlan   defines which dependencies are joined
+     * @param idsAmount   amount of the ids, size of the IN list is {@link #getInListSize} of it
+     * @return Parametrized SQL query for Prepared Statement
+     */
+    JoinedQuery getJoinedFindByIdsQuery(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan, int idsAmount) {
+        EntityGraph graph = fetchPlanner.getGraph(entityClass, fetchPlan);
+        String primaryKey = graph.getRoot().getTable().getPrimaryKeyName();
+        return graph.getFindByIdsQueries().computeIfAbsent(getInListSize(idsAmount),
+                size -> generateJoinedFindByParameterValuesQuery(entityClass, fetchPlan, primaryKey, size));
+    }
+
+    /**
+     * Gets query which marks as deleted all records with id from the list.
+     * Queries are cached by the size of the IN list.
+     *
+     * @param entityClass - some entity class which collates with database table
+     * @param idsAmount   amount of the ids, size of the IN list is {@link #getInListSize} of it
+     * @return Parametrized SQL query for Prepared Statement
+     */
+    String getDeleteByIdsQuery(Class<? extends BaseEntity> entityClass, int idsAmount) {
+        DatabaseTable table = dbMetadataManager.getTableForClass(entityClass);
+        return getQueryPlan(entityClass).deleteByIdsQueries.computeIfAbsent(getInListSize(idsAmount),
+                size -> generateDeleteByIdsQuery(table, size));
+    }
+
+    private String generateDeleteByIdsQuery(DatabaseTable table, int idsAmount) {
+        String templateQuery = queries.getProperty(DELETE_BY_IDS_QUERY_NAME);
+        String wildcards = String.join(COMMA, Collections.nCopies(idsAmount, WILDCARD.trim()));
+        return String.format(templateQuery, table.getName(), table.getPrimaryKeyName(), wildcards);
     }
 
     /**
-     * Generates search query which returns database records
-     * with values which are equals to specified parameters,
-     * the table name in query shall be taken from class.
+     * Generates select query of specified type which reads entity
+     * together with dependencies joined according to the fetch plan.
+     * Caches all generated queries.
+     *
+     * @param type        of query, only {@link SqlQueryType#FIND_BY_ID} and {@link SqlQueryType#READ_ALL}
+     *                    are supported
+     * @param entityClass - some entity class which collates with database table
+     * @param fetchPlan   defines which dependencies are joined
+     * @return Parametrized SQL query for Prepared Statement
+     */
+    JoinedQuery getJoinedQueryForClass(SqlQueryType type, Class<? extends BaseEntity> entityClass,
+                                       FetchPlan fetchPlan) {
+        EntityGraph graph = fetchPlanner.getGraph(entityClass, fetchPlan);
+        return graph.getQueries().computeIfAbsent(type, queryType -> generateJoinedQuery(queryType, graph));
+    }
+
+    /**
+     * Gets search query which reads entity together with dependencies
+     * joined according to the fetch plan, the parameters are related to
+     * the table of the entity class. Queries are cached by the list of the parameter names.
      *
      * @param entityClass     - some entity class which collates with database table
-     *                        needs to take table name from class name
-     * @param parametersNames which are equals to database column names
+     * @param fetchPlan       defines which dependencies are joined
+     * @param parametersNames which are equals to database column names, not empty
      * @return Parametrized SQL query for Prepared Statement
      */
-    public String generateFindByParametersQuery(Class<? extends BaseEntity> entityClass,
-                                                Collection<String> parametersNames) {
-        String tableName = NameFormatter.getTableNameForClass(entityClass);
-        String templateQuery = queries.getProperty(FIND_BY_PARAMETERS_QUERY_NAME);
-        String templateWithTableName =
-                String.format(templateQuery, tableName, "%s"); //substitute only table name
-        return String.format(templateWithTableName, generateParametersWithNameString(parametersNames, true));
+    JoinedQuery getJoinedFindByParametersQuery(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan,
+                                               List<String> parametersNames) {
+        EntityGraph graph = fetchPlanner.getGraph(entityClass, fetchPlan);
+        JoinedQuery searchQuery = graph.getFindByParametersQueries().get(parametersNames);
+        if (searchQuery != null) return searchQuery;
+        return graph.getFindByParametersQueries().computeIfAbsent(ImmutableList.copyOf(parametersNames),
+                names -> generateJoinedFindByParametersQuery(graph, names));
+    }
+
+    private JoinedQuery generateJoinedFindByParametersQuery(EntityGraph graph, List<String> parametersNames) {
+        String rootAlias = graph.getRoot().getAlias();
+        List<String> qualifiedNames = new ArrayList<>();
+        for (String parameterName : parametersNames) {
+            qualifiedNames.add(rootAlias + "." + parameterName);
+        }
+        String templateQuery = queries.getProperty(JOINED_QUERY_PREFIX + FIND_BY_PARAMETERS_QUERY_NAME);
+        String queryString = String.format(templateQuery,
+                graph.getSelect(), rootAlias, generateParametersWithNameString(qualifiedNames, true));
+        return new JoinedQuery(queryString, graph, new ArrayList<>());
     }
 
     /**
-     * Generates search query which returns database records
-     * with values which are equals to specified parameter,
-     * the table name in query shall be taken from class.
+     * Generates search query which reads entity together with dependencies
+     * joined according to the fetch plan, the parameter value has to be
+     * one of the specified amount of values.
      *
      * @param entityClass   - some entity class which collates with database table
-     *                      needs to take table name from class name
+     * @param fetchPlan     defines which dependencies are joined
      * @param parameterName parameter which equal to database column name
+     * @param valuesAmount  amount of the wildcards in IN clause
      * @return Parametrized SQL query for Prepared Statement
      */
-    public String generateFindByParameterQuery(Class<? extends BaseEntity> entityClass, String parameterName) {
-        List<String> parameters = new ArrayList<>();
-        parameters.add(parameterName);
-        return generateFindByParametersQuery(entityClass, parameters);
+    JoinedQuery generateJoinedFindByParameterValuesQuery(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan,
+                                                         String parameterName, int valuesAmount) {
+        EntityGraph graph = fetchPlanner.getGraph(entityClass, fetchPlan);
+        String templateQuery = queries.getProperty(JOINED_QUERY_PREFIX + FIND_BY_PARAMETER_VALUES_QUERY_NAME);
+        String wildcards = String.join(COMMA, Collections.nCopies(valuesAmount, WILDCARD.trim()));
+        String queryString = String.format(templateQuery,
+                graph.getSelect(), graph.getRoot().getAlias(), parameterName, wildcards);
+        return new JoinedQuery(queryString, graph, new ArrayList<>());
+    }
+
+    /**
+     * Gets search query which reads one page of the entities together with dependencies
+     * joined according to the fetch plan. Statement parameters are values of the search parameters,
+     * then id after which records are read if it's keyset request, then limit and offset.
+     * Queries are cached by the list of the parameter names, order column, order direction
+     * and by whether the request is keyset one.
+     *
+     * @param entityClass     - some entity class which collates with database table
+     * @param fetchPlan       defines which dependencies are joined
+     * @param parametersNames which are equals to database column names, may be empty
+     * @param pageRequest     defines order and page of the records
+     * @return Parametrized SQL query for Prepared Statement
+     * @throws DaoException if order column is absent in the table
+     *                      or if keyset request is ordered not by primary key
+     */
+    JoinedQuery getJoinedFindPageQuery(Class<? extends BaseEntity> entityClass, FetchPlan fetchPlan,
+                                       List<String> parametersNames, PageRequest pageRequest) {
+        EntityGraph graph = fetchPlanner.getGraph(entityClass, fetchPlan);
+        JoinedQuery pageQuery = graph.getPageQueries().get(new EntityGraph.PageQueryKey(parametersNames, pageRequest));
+        if (pageQuery != null) return pageQuery;
+        return graph.getPageQueries().computeIfAbsent(
+                new EntityGraph.PageQueryKey(ImmutableList.copyOf(parametersNames), pageRequest),
+                key -> generateJoinedFindPageQuery(graph, parametersNames, pageRequest));
+    }
+
+    private JoinedQuery generateJoinedFindPageQuery(EntityGraph graph, List<String> parametersNames,
+                                                    PageRequest pageRequest) {
+        DatabaseTable table = graph.getRoot().getTable();
+        String rootAlias = graph.getRoot().getAlias();
+        String primaryKey = table.getPrimaryKeyName();
+        String orderColumn = (pageRequest.getOrderColumn() != null) ? pageRequest.getOrderColumn() : primaryKey;
+        if (!hasColumn(table, orderColumn)) {
+            throw new DaoException("No column " + orderColumn + " to order in table " + table.getName());
+        }
+        boolean orderedByPrimaryKey = orderColumn.equalsIgnoreCase(primaryKey);
+        String direction = pageRequest.isDescending() ? DESCENDING_ORDER : ASCENDING_ORDER;
+        List<String> conditions = new ArrayList<>();
+        for (String parameterName : parametersNames) {
+            conditions.add(rootAlias + "." + parameterName + " = " + WILDCARD);
+        }
+        if (pageRequest.getAfterId() != null) {
+            if (!orderedByPrimaryKey) throw new DaoException("Keyset page can be ordered only by primary key");
+            conditions.add(rootAlias + "." + primaryKey + (pageRequest.isDescending() ? " < " : " > ") + WILDCARD);
+        }
+        String order = rootAlias + "." + orderColumn + direction;
+        if (!orderedByPrimaryKey) order += COMMA + rootAlias + "." + primaryKey + direction; //stable order
+        String templateQuery = queries.getProperty(JOINED_QUERY_PREFIX + FIND_PAGE_QUERY_NAME);
+        String queryString = String.format(templateQuery,
+                graph.getSelect(), rootAlias, generateConditionsPrefix(conditions), order, dialect.getPageClause());
+        return new JoinedQuery(queryString, graph, new ArrayList<>());
+    }
+
+    /**
+     * Gets query which counts not deleted records with values
+     * which are equals to specified parameters. Queries are cached by the list of the parameter names.
+     *
+     * @param entityClass     - some entity class which collates with database table
+     * @param parametersNames which are equals to database column names, may be empty
+     * @return Parametrized SQL query for Prepared Statement
+     */
+    String getCountByParametersQuery(Class<? extends BaseEntity> entityClass, List<String> parametersNames) {
+        QueryPlan plan = getQueryPlan(entityClass);
+        String countQuery = plan.countByParametersQueries.get(parametersNames);
+        if (countQuery != null) return countQuery;
+        DatabaseTable table = dbMetadataManager.getTableForClass(entityClass);
+        return plan.countByParametersQueries.computeIfAbsent(ImmutableList.copyOf(parametersNames),
+                names -> generateCountByParametersQuery(table, names));
+    }
+
+    private String generateCountByParametersQuery(DatabaseTable table, List<String> parametersNames) {
+        List<String> conditions = new ArrayList<>();
+        for (String parameterName : parametersNames) {
+            conditions.add(parameterName + " = " + WILDCARD);
+        }
+        String templateQuery = queries.getProperty(COUNT_BY_PARAMETERS_QUERY_NAME);
+        return String.format(templateQuery, table.getName(), generateConditionsPrefix(conditions));
+    }
+
+    /**
+     * Generates queries of all types for all tables which have primary key
+     */
+    private Map<String, QueryPlan> createQueryPlans() {
+        Map<String, QueryPlan> plans = new HashMap<>();
+        for (DatabaseTable table : dbMetadataManager.getTables()) {
+            if (table.getPrimaryKeyColumn() == null) continue; //queries of all types use primary key
+            SqlQuery[] tableQueries = new SqlQuery[QUERY_TYPES.length];
+            for (SqlQueryType type : QUERY_TYPES) {
+                if (type == SqlQueryType.READ_LAST && dialect.getLastInsertIdFunction() == null) continue;
+                tableQueries[type.ordinal()] = generateQuery(type, table);
+            }
+            plans.put(table.getName(), new QueryPlan(tableQueries));
+        }
+        return Collections.unmodifiableMap(plans);
+    }
+
+    private QueryPlan getQueryPlan(Class<? extends BaseEntity> entityClass) {
+        QueryPlan plan = plansByClass.get(entityClass);
+        if (plan == null) plan = plansByClass.computeIfAbsent(entityClass, this::findQueryPlan);
+        return plan;
+    }
+
+    private QueryPlan findQueryPlan(Class<?> entityClass) {
+        DatabaseTable table = dbMetadataManager.getTableForClass(entityClass.asSubclass(BaseEntity.class));
+        QueryPlan plan = plansByTableName.get(table.getName());
+        if (plan == null) throw new DaoException("Table " + table.getName() + " has no primary key");
+        return plan;
+    }
+
+    private JoinedQuery generateJoinedQuery(SqlQueryType type, EntityGraph graph) {
+        if (type != SqlQueryType.FIND_BY_ID && type != SqlQueryType.READ_ALL) {
+            throw new DaoException("Joined query can't be generated for type " + type.name());
+        }
+        DatabaseTable table = graph.getRoot().getTable();
+        String templateQuery = queries.getProperty(JOINED_QUERY_PREFIX + type.name());
+        String queryString = String.format(templateQuery,
+                graph.getSelect(), graph.getRoot().getAlias(), table.getPrimaryKeyName());
+        List<DatabaseColumn> parameters = new ArrayList<>();
+        if (type == SqlQueryType.FIND_BY_ID) parameters.add(table.getPrimaryKeyColumn());
+        JoinedQuery joinedQuery = new JoinedQuery(queryString, graph, parameters);
+        log.debug("Generated query " + joinedQuery);
+        return joinedQuery;
     }
 
     /**
@@ -120,7 +352,8 @@ public class SqlQueryFactory {
         } else if (type == SqlQueryType.UPDATE_BY_ID) {
             sqlQuery = generateUpdateQuery(templateQuery, table);
         } else if (type == SqlQueryType.READ_ALL || type == SqlQueryType.READ_LAST) {
-            queryString = String.format(templateQuery, table.getName(), table.getPrimaryKeyName());
+            queryString = String.format(templateQuery,
+                    table.getName(), table.getPrimaryKeyName(), dialect.getLastInsertIdFunction());
             sqlQuery = new SqlQueryImpl(queryString, table.getName()); //query without parameters
         } else {
             queryString = String.format(templateQuery, table.getName(), table.getPrimaryKeyName());
@@ -216,6 +449,19 @@ public class SqlQueryFactory {
         return sb.toString();
     }
 
+    /**
+     * @return conditions separated by {@link #SEARCH_QUERY_PARAMETERS_SEPARATOR} with the separator at the end,
+     * or empty string if there are no conditions, so the result can precede the next condition
+     */
+    private String generateConditionsPrefix(List<String> conditions) {
+        if (conditions.isEmpty()) return "";
+        return String.join(SEARCH_QUERY_PARAMETERS_SEPARATOR, conditions) + SEARCH_QUERY_PARAMETERS_SEPARATOR;
+    }
+
+    private boolean hasColumn(DatabaseTable table, String columnName) {
+        return table.getColumns().stream().anyMatch(column -> column.getName().equalsIgnoreCase(columnName));
+    }
+
     private List<String> getColumnNamesFromColumns(List<DatabaseColumn> columns) {
         return columns.stream().map(DatabaseColumn::getName).collect(Collectors.toList());
     }
@@ -232,28 +478,44 @@ public class SqlQueryFactory {
         return necessaryColumns;
     }
 
-    private class SqlQueryImpl implements SqlQuery {
-        private String query;
-        private String tableName;
-        private List<DatabaseColumn> parameters;
+    /**
+     * Queries of all types for one table, indexed by ordinal of the type,
+     * and queries which depend on the arguments, generated on the first request
+     */
+    private static class QueryPlan {
+        private final SqlQuery[] queries;
+        private final Map<List<String>, String> countByParametersQueries = new ConcurrentHashMap<>();
+        private final Map<Integer, String> deleteByIdsQueries = new ConcurrentHashMap<>();
+
+        private QueryPlan(SqlQuery[] queries) {
+            this.queries = queries;
+        }
+
+        private SqlQuery get(SqlQueryType type) {
+            return queries[type.ordinal()];
+        }
+    }
+
+    /**
+     * Immutable query, list of the parameters is shared by all callers
+     */
+    private static class SqlQueryImpl implements SqlQuery {
+        private final String query;
+        private final String tableName;
+        private final List<DatabaseColumn> parameters;
 
-        public SqlQueryImpl(String query, String tableName) {
-            this.query = query;
-            this.tableName = tableName;
-            parameters = new ArrayList<>();
+        private SqlQueryImpl(String query, String tableName) {
+            this(query, tableName, ImmutableList.of());
         }
 
         private SqlQueryImpl(String query, String tableName, List<DatabaseColumn> parameters) {
             this.query = query;
             this.tableName = tableName;
-            this.parameters = parameters;
+            this.parameters = ImmutableList.copyOf(parameters);
         }
 
-        public SqlQueryImpl(String query, String tableName, DatabaseColumn parameter) {
-            this.query = query;
-            this.tableName = tableName;
-            parameters = new ArrayList<>();
-            parameters.add(parameter);
+        private SqlQueryImpl(String query, String tableName, DatabaseColumn parameter) {
+            this(query, tableName, ImmutableList.of(parameter));
         }
 
         @Override
@@ -268,7 +530,7 @@ public class SqlQueryFactory {
 
         @Override
         public List<DatabaseColumn> getParameters() {
-            return ImmutableList.copyOf(parameters);
+            return parameters;
         }
 
         @Override
@@ -0,0 +1,81 @@
+package com.epam.store.dao;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dialect of the database without specific support, uses only standard features.
+ * Application tables are searched in the current catalog of the connection.
+ */
+class StandardDialect implements Dialect {
+    private static final String PAGE_CLAUSE = "LIMIT ? OFFSET ?";
+    private static final int MAX_IN_LIST_SIZE = 512;
+    private final String name;
+    private final boolean generatedKeysSupported;
+
+    StandardDialect(String name, boolean generatedKeysSupported) {
+        this.name = name;
+        this.generatedKeysSupported = generatedKeysSupported;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getCatalog(DatabaseMetaData metaData) {
+        try {
+            return metaData.getConnection().getCatalog();
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
+    @Override
+    public String getSchema(DatabaseMetaData metaData) {
+        return null;
+    }
+
+    @Override
+    public boolean supportsGeneratedKeys() {
+        return generatedKeysSupported;
+    }
+
+    @Override
+    public boolean supportsBatchGeneratedKeys() {
+        return false;
+    }
+
+    @Override
+    public String getLastInsertIdFunction() {
+        return null;
+    }
+
+    @Override
+    public String getPageClause() {
+        return PAGE_CLAUSE;
+    }
+
+    @Override
+    public int getMaxInListSize() {
+        return MAX_IN_LIST_SIZE;
+    }
+
+    @Override
+    public int getStreamFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
+    @Override
+    public List<String> getConnectionHints(String url) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + name + "}";
+    }
+}
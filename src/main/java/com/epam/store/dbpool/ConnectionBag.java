@@ -0,0 +1,169 @@
+package com.epam.store.dbpool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free container of the pooled connections. Each entry has a state,
+ * an entry is taken by compare-and-set of its state, so borrowing doesn't
+ * need any lock. Borrowing thread at first looks through connections which
+ * it has returned recently (thread-local list), then through all connections
+ * (shared deque), and at last waits for a connection which is handed off
+ * directly from the returning thread. Handoff is fair only among the threads
+ * which are already waiting: a newly borrowing thread scans the deque before
+ * queuing, so it can take a returned entry ahead of them. This keeps borrowing
+ * without waiting lock-free, the waiters still get the entries returned while
+ * nobody else is scanning.
+ *
+ * @param <T> type of the entry
+ */
+class ConnectionBag<T extends ConnectionBag.BagEntry> {
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+    static final int STATE_RESERVED = -2;
+    private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+    private static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private final ConcurrentLinkedDeque<T> sharedList = new ConcurrentLinkedDeque<>();
+    private final ThreadLocal<List<WeakReference<T>>> threadList = ThreadLocal.withInitial(ArrayList::new);
+    private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<>(true);
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * Entry of the bag, its state is one of the bag STATE constants
+     */
+    interface BagEntry {
+        int getState();
+
+        boolean compareAndSetState(int expectedState, int newState);
+    }
+
+    /**
+     * Takes not used entry from the bag
+     *
+     * @param timeout how long to wait for returning of entry by other thread, 0 means not to wait
+     * @return entry in state {@link #STATE_IN_USE} or null if timeout elapsed
+     * @throws InterruptedException if thread was interrupted while waiting
+     */
+    T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        //at first try connections recently used by this thread, most likely they are free
+        List<WeakReference<T>> localList = threadList.get();
+        for (int i = localList.size() - 1; i >= 0; i--) {
+            T entry = localList.remove(i).get();
+            if (entry != null && entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) return entry;
+        }
+        //waiters are counted before scanning, so returning thread will hand off entry if scan misses it
+        waiters.incrementAndGet();
+        try {
+            for (T entry : sharedList) {
+                if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) return entry;
+            }
+            long remainingNanos = timeUnit.toNanos(timeout);
+            while (remainingNanos > MIN_WAIT_NANOS) {
+                long start = System.nanoTime();
+                T entry = handoffQueue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                if (entry == null) return null;
+                if (entry.compareAndSetState(STATE_NOT_IN_USE, STATE_IN_USE)) return entry;
+                remainingNanos -= System.nanoTime() - start; //entry was taken by other thread, wait more
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns borrowed entry to the bag, if there are waiting threads
+     * the entry is handed off to one of them
+     */
+    void requite(T entry) {
+        entry.compareAndSetState(STATE_IN_USE, STATE_NOT_IN_USE);
+        handOff(entry);
+        List<WeakReference<T>> localList = threadList.get();
+        if (localList.size() < MAX_THREAD_LOCAL_ENTRIES) localList.add(new WeakReference<>(entry));
+    }
+
+    /**
+     * Adds new entry to the bag, entry which is not in use is handed off to a waiting thread
+     */
+    void add(T entry) {
+        sharedList.add(entry);
+        handOff(entry);
+    }
+
+    /**
+     * Removes entry from the bag, only borrowed or reserved entry can be removed
+     *
+     * @return true if entry was removed
+     */
+    boolean remove(T entry) {
+        if (!entry.compareAndSetState(STATE_IN_USE, STATE_REMOVED)
+                && !entry.compareAndSetState(STATE_RESERVED, STATE_REMOVED)) {
+            return false;
+        }
+        return sharedList.remove(entry);
+    }
+
+    /**
+     * Makes not used entry unavailable for borrowing, for example to check or to close it
+     *
+     * @return true if entry was reserved
+     */
+    boolean reserve(T entry) {
+        return entry.compareAndSetState(STATE_NOT_IN_USE, STATE_RESERVED);
+    }
+
+    /**
+     * Makes reserved entry available for borrowing again
+     */
+    void unreserve(T entry) {
+        if (entry.compareAndSetState(STATE_RESERVED, STATE_NOT_IN_USE)) handOff(entry);
+    }
+
+    /**
+     * @return snapshot of the entries in specified state
+     */
+    List<T> values(int state) {
+        List<T> values = new ArrayList<>();
+        for (T entry : sharedList) {
+            if (entry.getState() == state) values.add(entry);
+        }
+        return values;
+    }
+
+    /**
+     * @return snapshot of all entries
+     */
+    List<T> values() {
+        return new ArrayList<>(sharedList);
+    }
+
+    int size() {
+        return sharedList.size();
+    }
+
+    int getWaitingThreadsCount() {
+        return waiters.get();
+    }
+
+    /**
+     * While there are waiting threads and the entry is free, tries to give it
+     * to one of them directly. Spinning ends when a waiter or any other thread takes the entry.
+     */
+    private void handOff(T entry) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(entry)) return;
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(MIN_WAIT_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
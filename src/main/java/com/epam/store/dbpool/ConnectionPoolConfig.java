@@ -3,30 +3,83 @@ package com.epam.store.dbpool;
 import org.aeonbits.owner.Config;
 import org.aeonbits.owner.ConfigFactory;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Settings of the pool from database.properties.
+ * Database is either reached by the configured url or, if embedded mode is on,
+ * opened in the process of the application by file url built from the embedded settings,
+ * so queries don't go through the network. Embedded database is not closed with its last connection,
+ * because the house keeper can close all of them (for example, expired ones) and reopening of the
+ * database is slow, so it's kept open until the pool shutdown, which closes it explicitly.
+ */
 class ConnectionPoolConfig {
+    private static final String EMBEDDED_URL_PREFIX = "jdbc:h2:file:";
+    private static final String MV_STORE_SETTING = ";MV_STORE=";
+    private static final String MIXED_MODE_SETTING = ";AUTO_SERVER=TRUE";
+    private static final String KEEP_OPEN_SETTING = ";DB_CLOSE_DELAY=-1";
     private long connectionIdleTimeout;
     private int connectionValidTimeout;
     private int maxConnections;
     private int maxAvailableConnections;
     private int minAvailableConnections;
+    private int statementCacheSize;
+    private long borrowTimeout;
+    private long aliveBypassWindow;
+    private long validationInterval;
+    private long maxLifetime;
+    private long leakDetectionThreshold;
     private String username;
     private String password;
     private String driver;
     private String url;
+    private boolean embedded;
+    private boolean embeddedMixedMode;
 
     ConnectionPoolConfig() {
-        PoolConfig config = ConfigFactory.create(PoolConfig.class);
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * @param properties values of the settings which are not set in database.properties,
+     *                   they replace the default values
+     */
+    ConnectionPoolConfig(Map<?, ?> properties) {
+        PoolConfig config = ConfigFactory.create(PoolConfig.class, properties);
         connectionIdleTimeout = TimeUnit.MINUTES.toMillis(config.connectionIdleTimeout());
         connectionValidTimeout = config.connectionValidTimeout();
         maxConnections = config.maxConnections();
         maxAvailableConnections = config.maxAvailableConnections();
         minAvailableConnections = config.minAvailableConnections();
+        statementCacheSize = config.statementCacheSize();
+        borrowTimeout = config.borrowTimeout();
+        aliveBypassWindow = config.aliveBypassWindow();
+        validationInterval = config.validationInterval();
+        maxLifetime = config.maxLifetime();
+        leakDetectionThreshold = config.leakDetectionThreshold();
         username = config.username();
         password = config.password();
         driver = config.driver();
-        url = config.url();
+        embedded = config.embedded();
+        embeddedMixedMode = embedded && config.embeddedMixedMode();
+        url = embedded ? createEmbeddedUrl(config) : config.url();
+    }
+
+    /**
+     * In mixed mode other processes (e.g. database tools) can connect to the embedded database,
+     * the first process which opened it serves connections of the others through TCP
+     */
+    private static String createEmbeddedUrl(PoolConfig config) {
+        StringBuilder sb = new StringBuilder(EMBEDDED_URL_PREFIX);
+        sb.append(config.embeddedPath());
+        sb.append(MV_STORE_SETTING).append(config.embeddedMvStore() ? "TRUE" : "FALSE");
+        sb.append(KEEP_OPEN_SETTING);
+        if (config.embeddedMixedMode()) {
+            sb.append(MIXED_MODE_SETTING);
+        }
+        return sb.toString();
     }
 
     public long connectionIdleTimeout() {
@@ -49,6 +102,47 @@ class ConnectionPoolConfig {
         return minAvailableConnections;
     }
 
+    public int statementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return how long to wait for a free connection in milliseconds
+     */
+    public long borrowTimeout() {
+        return borrowTimeout;
+    }
+
+    /**
+     * @return time in milliseconds since last use of the connection during which
+     * it is considered alive and is given out without validation
+     */
+    public long aliveBypassWindow() {
+        return aliveBypassWindow;
+    }
+
+    /**
+     * @return how often idle connections are validated in background in milliseconds
+     */
+    public long validationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @return max lifetime of the connection in milliseconds, 0 means unlimited lifetime
+     */
+    public long maxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * @return time in milliseconds after which held connection is reported as possible leak,
+     * 0 disables leak detection
+     */
+    public long leakDetectionThreshold() {
+        return leakDetectionThreshold;
+    }
+
     public String username() {
         return username;
     }
@@ -61,10 +155,24 @@ class ConnectionPoolConfig {
         return driver;
     }
 
+    /**
+     * @return url of the database, in embedded mode it's built from the embedded settings
+     */
     public String url() {
         return url;
     }
 
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    /**
+     * @return true if other processes can connect to the embedded database
+     */
+    public boolean isEmbeddedMixedMode() {
+        return embeddedMixedMode;
+    }
+
 
     @Config.Sources("classpath:database.properties")
     interface PoolConfig extends Config {
@@ -77,6 +185,18 @@ class ConnectionPoolConfig {
 
         public String url();
 
+        @DefaultValue("false")//true opens the database in the process of the application instead of url
+        public boolean embedded();
+
+        @DefaultValue("~/database/online-store")//path of the database file without extension
+        public String embeddedPath();
+
+        @DefaultValue("true")
+        public boolean embeddedMvStore();
+
+        @DefaultValue("false")//true allows other processes to connect to the embedded database
+        public boolean embeddedMixedMode();
+
         @DefaultValue("2")//minutes
         public long connectionIdleTimeout();
 
@@ -91,5 +211,23 @@ class ConnectionPoolConfig {
 
         @DefaultValue("50")
         public int maxAvailableConnections();
+
+        @DefaultValue("50")//statements per connection, 0 disables the cache
+        public int statementCacheSize();
+
+        @DefaultValue("30000")//ms
+        public long borrowTimeout();
+
+        @DefaultValue("500")//ms
+        public long aliveBypassWindow();
+
+        @DefaultValue("30000")//ms
+        public long validationInterval();
+
+        @DefaultValue("1800000")//ms, 0 means unlimited lifetime
+        public long maxLifetime();
+
+        @DefaultValue("0")//ms, 0 disables leak detection
+        public long leakDetectionThreshold();
     }
 }
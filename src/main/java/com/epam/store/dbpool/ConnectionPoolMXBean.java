@@ -0,0 +1,21 @@
+package com.epam.store.dbpool;
+
+/**
+ * JMX view of the connection pool, registered as
+ * com.epam.store.dbpool:type=ConnectionPool,name=pool-N
+ * for each created pool and unregistered on its shutdown
+ */
+public interface ConnectionPoolMXBean {
+    public int getActiveConnections();
+
+    public int getIdleConnections();
+
+    public int getTotalConnections();
+
+    public int getWaitingThreads();
+
+    /**
+     * @return snapshot of all statistics including borrow wait time and hold time histograms
+     */
+    public PoolStatistics getStatistics();
+}
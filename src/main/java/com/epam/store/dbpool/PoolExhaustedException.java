@@ -0,0 +1,24 @@
+package com.epam.store.dbpool;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when connection was not borrowed from the pool during the borrow timeout,
+ * contains description of the threads which held connections at that moment
+ */
+public class PoolExhaustedException extends PoolException {
+    private final List<String> connectionHolders;
+
+    public PoolExhaustedException(String message, List<String> connectionHolders) {
+        super(message + ", connection holders: " + connectionHolders);
+        this.connectionHolders = Collections.unmodifiableList(connectionHolders);
+    }
+
+    /**
+     * @return descriptions of the threads which held connections, with holding time
+     */
+    public List<String> getConnectionHolders() {
+        return connectionHolders;
+    }
+}
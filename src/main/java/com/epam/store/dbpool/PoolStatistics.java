@@ -0,0 +1,149 @@
+package com.epam.store.dbpool;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the connection pool state and statistics.
+ * Histograms contain counts of the durations in buckets with bounds
+ * from {@link #getHistogramBucketBounds()}, the last bucket counts
+ * durations longer than the last bound.
+ */
+public class PoolStatistics {
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int waitingThreads;
+    private final long[] borrowWaitTimeHistogram;
+    private final double borrowWaitTimeMean;
+    private final long borrowWaitTimeMax;
+    private final long[] holdTimeHistogram;
+    private final double holdTimeMean;
+    private final long holdTimeMax;
+    private final long creationFailureCount;
+    private final long validationFailureCount;
+    private final long leakCount;
+    private final long statementCacheHitCount;
+    private final long statementCacheMissCount;
+
+    PoolStatistics(int activeConnections, int idleConnections, int totalConnections, int waitingThreads,
+                   TimeHistogram borrowWaitTime, TimeHistogram holdTime, long creationFailureCount,
+                   long validationFailureCount, long leakCount,
+                   long statementCacheHitCount, long statementCacheMissCount) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.waitingThreads = waitingThreads;
+        this.borrowWaitTimeHistogram = borrowWaitTime.getCounts();
+        this.borrowWaitTimeMean = borrowWaitTime.getMean();
+        this.borrowWaitTimeMax = borrowWaitTime.getMax();
+        this.holdTimeHistogram = holdTime.getCounts();
+        this.holdTimeMean = holdTime.getMean();
+        this.holdTimeMax = holdTime.getMax();
+        this.creationFailureCount = creationFailureCount;
+        this.validationFailureCount = validationFailureCount;
+        this.leakCount = leakCount;
+        this.statementCacheHitCount = statementCacheHitCount;
+        this.statementCacheMissCount = statementCacheMissCount;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return amount of open connections including ones which are being created
+     */
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getWaitingThreads() {
+        return waitingThreads;
+    }
+
+    /**
+     * @return upper bounds of the histogram buckets in milliseconds
+     */
+    public long[] getHistogramBucketBounds() {
+        return TimeHistogram.BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * @return histogram of the time which threads waited for connection in milliseconds
+     */
+    public long[] getBorrowWaitTimeHistogram() {
+        return borrowWaitTimeHistogram.clone();
+    }
+
+    public double getBorrowWaitTimeMean() {
+        return borrowWaitTimeMean;
+    }
+
+    public long getBorrowWaitTimeMax() {
+        return borrowWaitTimeMax;
+    }
+
+    /**
+     * @return histogram of the time between borrowing and returning of connection in milliseconds
+     */
+    public long[] getHoldTimeHistogram() {
+        return holdTimeHistogram.clone();
+    }
+
+    public double getHoldTimeMean() {
+        return holdTimeMean;
+    }
+
+    public long getHoldTimeMax() {
+        return holdTimeMax;
+    }
+
+    public long getCreationFailureCount() {
+        return creationFailureCount;
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailureCount;
+    }
+
+    /**
+     * @return how many times connection was held longer than leak detection threshold
+     */
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    public long getStatementCacheHitCount() {
+        return statementCacheHitCount;
+    }
+
+    public long getStatementCacheMissCount() {
+        return statementCacheMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{" +
+                "activeConnections=" + activeConnections +
+                ", idleConnections=" + idleConnections +
+                ", totalConnections=" + totalConnections +
+                ", waitingThreads=" + waitingThreads +
+                ", histogramBucketBounds=" + Arrays.toString(TimeHistogram.BUCKET_BOUNDS) +
+                ", borrowWaitTimeHistogram=" + Arrays.toString(borrowWaitTimeHistogram) +
+                ", borrowWaitTimeMean=" + borrowWaitTimeMean +
+                ", borrowWaitTimeMax=" + borrowWaitTimeMax +
+                ", holdTimeHistogram=" + Arrays.toString(holdTimeHistogram) +
+                ", holdTimeMean=" + holdTimeMean +
+                ", holdTimeMax=" + holdTimeMax +
+                ", creationFailureCount=" + creationFailureCount +
+                ", validationFailureCount=" + validationFailureCount +
+                ", leakCount=" + leakCount +
+                ", statementCacheHitCount=" + statementCacheHitCount +
+                ", statementCacheMissCount=" + statementCacheMissCount +
+                '}';
+    }
+}
@@ -3,143 +3,318 @@ package com.epam.store.dbpool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
-public class SqlConnectionPool implements ConnectionPool {
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Connection pool based on the lock-free {@link ConnectionBag}.
+ * Borrowing and returning of the connection don't take any lock,
+ * validation of the connection is done by borrowing thread when connection
+ * is already taken from the bag. New connections are created by the
+ * {@link HouseKeeper} threads, borrowing thread only requests creation
+ * and waits for the connection to be handed off.
+ * Pool collects statistics of its usage, they are available by {@link #getStatistics()}
+ * and through JMX.
+ */
+public class SqlConnectionPool implements ConnectionPool, ConnectionPoolMXBean {
     private static final Logger log = LoggerFactory.getLogger(SqlConnectionPool.class);
+    //waiting is split into slices to check whether place for the new connection appeared
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MAX_REPORTED_HOLDERS = 20;
+    private static final String MBEAN_NAME_PATTERN = "com.epam.store.dbpool:type=ConnectionPool,name=pool-";
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+    private static final String SHUTDOWN_EMBEDDED_DATABASE_QUERY = "SHUTDOWN";
     private ConnectionPoolConfig config;
-    private List<PooledConnection> availableConnections;
-    private List<PooledConnection> usedConnections;
-    private Lock lock;
-    private Condition hasAvailableConnection;
-    private ConnectionCollector connectionCollector;
+    private ConnectionBag<PooledConnection> connectionBag;
+    private AtomicInteger totalConnections;
+    private AtomicInteger pendingCreations;
+    private volatile PoolException lastCreationFailure;
+    private HouseKeeper houseKeeper;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final TimeHistogram borrowWaitTime = new TimeHistogram();
+    private final TimeHistogram holdTime = new TimeHistogram();
+    private final LongAdder creationFailures = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private ObjectName mBeanName;
 
     public SqlConnectionPool() {
-        config = new ConnectionPoolConfig();
-        availableConnections = new LinkedList<>();
-        usedConnections = new LinkedList<>();
-        lock = new ReentrantLock();
-        hasAvailableConnection = lock.newCondition();
+        this(new ConnectionPoolConfig());
+    }
+
+    SqlConnectionPool(ConnectionPoolConfig config) {
+        this.config = config;
+        connectionBag = new ConnectionBag<>();
+        totalConnections = new AtomicInteger();
+        pendingCreations = new AtomicInteger();
         initializeDriver(config.driver());
         initializePoolWithMinimumConnections();
-        connectionCollector = new ConnectionCollector();
-        connectionCollector.start(config.connectionIdleTimeout());
-        log.info("Connection pool is initialized successfully. Available connections: " + availableConnections.size());
+        houseKeeper = new HouseKeeper();
+        houseKeeper.start(Math.min(config.connectionIdleTimeout(), config.validationInterval()));
+        registerMBean();
+        if (config.isEmbedded()) {
+            log.info("Using embedded database " + config.url());
+        }
+        log.info("Connection pool is initialized successfully. Available connections: " + connectionBag.size());
     }
 
+    /**
+     * Takes free connection from the bag, if there is no free connection
+     * and limit of connections is not reached then requests creation of the new one,
+     * and waits until the new connection is created or other thread returns connection,
+     * but not longer than borrow timeout. Threads which are already waiting get returned
+     * connections in FIFO order, but a newly borrowing thread can take a free connection before them.
+     * Taken connection is validated only if it was not used during alive bypass window,
+     * dead and expired connections are removed. Idle connections are also validated
+     * in background by {@link HouseKeeper}.
+     *
+     * @return connection
+     * @throws PoolExhaustedException if no connection was returned during the borrow timeout
+     * @throws PoolException          if connection can't be created, probably database is down,
+     *                                or if thread was interrupted while waiting
+     */
     public SqlPooledConnection getConnection() {
-        PooledConnection availableConnection = null;
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(config.borrowTimeout());
         try {
-            lock.lock();
-            log.debug("Current amount of connections: " + (availableConnections.size() + usedConnections.size()));
-            while (noAvailableConnections() && isConnectionLimit()) {
-                //log.info("Limit of connections has been reached");
-                hasAvailableConnection.await(); //wait until other thread release the connection
-            }
-            try {
-                availableConnection = getAvailableConnection();
-                availableConnections.remove(availableConnection);
-                usedConnections.add(availableConnection);
-            } finally {
-                lock.unlock();
+            while (true) {
+                PooledConnection connection = connectionBag.borrow(0, TimeUnit.NANOSECONDS);
+                if (connection == null) {
+                    addConnectionAsync();
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) throw createExhaustedException();
+                    connection = connectionBag.borrow(Math.min(remainingNanos, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+                }
+                if (connection == null) {
+                    checkDatabaseIsReachable();
+                    continue;
+                }
+                if (connection.isExpired()) {
+                    log.debug("Removing expired connection");
+                    removeConnection(connection);
+                    continue;
+                }
+                //check for the case if database is down, not holding any lock
+                if (connection.isRecentlyUsed() || connection.isValid()) {
+                    connection.markBorrowed();
+                    borrowWaitTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    return connection;
+                }
+                log.debug("Removing dead connection");
+                removeConnection(connection);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.warn("InterruptedException in thread: " + Thread.currentThread().getName(), e);
+            String errorMessage = "Interrupted while waiting for connection in thread "
+                    + Thread.currentThread().getName();
+            log.warn(errorMessage, e);
+            throw new PoolException(errorMessage, e);
         }
-        return availableConnection;
     }
 
     /**
-     * Closes all connections regardless is connection used right now or not
+     * Closes all connections regardless is connection used right now or not,
+     * then closes embedded database if it's not shared with other processes
      *
      * @throws PoolException if can't close one of the connections
      */
     public void shutdown() {
-        int closedCount;
+        unregisterMBean();
+        houseKeeper.stop();
+        int closedCount = 0;
         try {
-            closedCount = closeConnections(availableConnections);
-            closedCount += closeConnections(usedConnections);
+            for (PooledConnection connection : connectionBag.values()) {
+                connection.forceState(ConnectionBag.STATE_RESERVED); //used connections are closed as well
+                connectionBag.remove(connection);
+                closeConnection(connection);
+                closedCount++;
+            }
         } catch (SQLException e) {
             String errorMessage = "Can't close connection pool";
             log.error(errorMessage, e);
             throw new PoolException(errorMessage, e);
         }
-        connectionCollector.stop();
+        if (config.isEmbedded() && !config.isEmbeddedMixedMode()) shutdownEmbeddedDatabase();
         log.info("The connection pool closed successfully. {} connections has been closed", closedCount);
+        log.info("Statement cache hits: {}, misses: {}", statementCacheHits.get(), statementCacheMisses.get());
     }
 
     /**
-     * Gets available connection from the available connections list
-     * Before getting the connection method checks whether the list size is 0
-     * if it is, then probably database was down and connection pool
-     * needs to initialize with connection again. Otherwise method iterates
-     * the list and get first alive connection
-     * at the same time removes dead connections if such are present.
-     * If there is no alive connections it means database is or was down.
-     * At last method shall try to return new connection, if database down at present
-     * will be thrown {@link PoolException}
-     *
-     * @return PooledConnection
-     * @throws PoolException if all available connections is dead
+     * Embedded database is kept open after closing of its last connection, so it's closed explicitly.
+     * In mixed mode other processes can still use it, then it's closed on exit of the process.
      */
-    private PooledConnection getAvailableConnection() {
-        if (noAvailableConnections() && noUsedConnections() && config.minAvailableConnections() > 0) {
-            initializePoolWithMinimumConnections();
-            log.info("Connection pool initialized again with " + availableConnections.size() + " connections");
-            return availableConnections.iterator().next();
-        }
-        //iterate available connections and find alive one
-        Iterator<PooledConnection> iterator = availableConnections.iterator();
-        while (iterator.hasNext()) {
-            PooledConnection availableConnection = iterator.next();
-            //check for the case if database is down
-            if (availableConnection.isValid()) {
-                return availableConnection;
-            } else {
-                iterator.remove();//remove dead connection
-            }
+    private void shutdownEmbeddedDatabase() {
+        try (Connection connection = DriverManager.getConnection(config.url(), config.username(), config.password());
+             Statement statement = connection.createStatement()) {
+            statement.execute(SHUTDOWN_EMBEDDED_DATABASE_QUERY);
+        } catch (SQLException e) {
+            String errorMessage = "Can't close embedded database";
+            log.error(errorMessage, e);
+            throw new PoolException(errorMessage, e);
         }
-        return createConnection(); //if can't create connection then throws exception because database is down
+        log.info("Embedded database has been closed");
     }
 
-    private boolean noAvailableConnections() {
-        return (availableConnections.size() == 0);
+    @Override
+    public int getActiveConnections() {
+        return connectionBag.values(ConnectionBag.STATE_IN_USE).size();
     }
 
-    private boolean isConnectionLimit() {
-        return (usedConnections.size() == config.maxConnections());
+    @Override
+    public int getIdleConnections() {
+        return connectionBag.values(ConnectionBag.STATE_NOT_IN_USE).size();
     }
 
-    private boolean noUsedConnections() {
-        return (usedConnections.size() == 0);
+    @Override
+    public int getTotalConnections() {
+        return totalConnections.get();
     }
 
-    private void releaseConnection(PooledConnection connection) {
-        lock.lock();
+    @Override
+    public int getWaitingThreads() {
+        return connectionBag.getWaitingThreadsCount();
+    }
+
+    /**
+     * @return snapshot of the pool state and statistics
+     */
+    @Override
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(getActiveConnections(), getIdleConnections(), getTotalConnections(),
+                getWaitingThreads(), borrowWaitTime, holdTime, creationFailures.sum(), validationFailures.sum(),
+                leaks.sum(), statementCacheHits.get(), statementCacheMisses.get());
+    }
+
+    /**
+     * @return how many times prepared statement was taken from the statement cache of a connection
+     */
+    public long getStatementCacheHitCount() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return how many times prepared statement was not found in the cache and was prepared
+     */
+    public long getStatementCacheMissCount() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Requests creation of the new connection by the house keeper, if limit of connections
+     * is not reached and there are less pending creations than waiting threads
+     */
+    private void addConnectionAsync() {
+        if (pendingCreations.get() > connectionBag.getWaitingThreadsCount()) return;
+        if (!reserveConnectionSlot()) return;
+        pendingCreations.incrementAndGet();
+        if (!houseKeeper.execute(this::addConnection)) {
+            pendingCreations.decrementAndGet();
+            totalConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Creates connection in the place reserved by {@link #reserveConnectionSlot()}
+     * and adds it to the bag, so it is handed off to a waiting thread if there is one
+     */
+    private void addConnection() {
         try {
-            if (usedConnections.remove(connection)) {
-                connection.setLastAccessTimeStamp(System.currentTimeMillis());
-                availableConnections.add(connection);
-                hasAvailableConnection.signal();
-            }
+            connectionBag.add(createConnection());
+            lastCreationFailure = null;
+        } catch (PoolException e) {
+            totalConnections.decrementAndGet();
+            lastCreationFailure = e;
         } finally {
-            lock.unlock();
+            pendingCreations.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserves place for the new connection by increasing the connection counter
+     *
+     * @return false if limit of connections is reached
+     */
+    private boolean reserveConnectionSlot() {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= config.maxConnections()) return false;
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        return true;
+    }
+
+    /**
+     * There is nothing to wait for if connection can't be created and there are no connections at all
+     *
+     * @throws PoolException with the last creation error
+     */
+    private void checkDatabaseIsReachable() {
+        PoolException creationFailure = lastCreationFailure;
+        if (creationFailure != null && totalConnections.get() == 0) {
+            throw new PoolException(creationFailure.getMessage(), creationFailure);
         }
     }
 
-    private int closeConnections(List<PooledConnection> connections) throws SQLException {
-        int closed = 0;
-        for (PooledConnection pooledConnection : connections) {
-            pooledConnection.getConnection().close();
-            closed++;
+    /**
+     * Creates exception with snapshot of the threads which hold connections,
+     * the longest holders go first
+     */
+    private PoolExhaustedException createExhaustedException() {
+        List<PooledConnection> usedConnections = connectionBag.values(ConnectionBag.STATE_IN_USE);
+        long currentTime = System.currentTimeMillis();
+        //values are copied before sorting, because connections can be borrowed again meanwhile
+        List<String> holders = usedConnections.stream()
+                .map(connection -> new AbstractMap.SimpleEntry<>(
+                        connection.getBorrowThreadName(), currentTime - connection.getBorrowTimeStamp()))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(MAX_REPORTED_HOLDERS)
+                .map(holder -> holder.getKey() + " (" + holder.getValue() + " ms)")
+                .collect(Collectors.toList());
+        String errorMessage = "No connection available during " + config.borrowTimeout() + " ms, "
+                + usedConnections.size() + " connections in use, "
+                + connectionBag.getWaitingThreadsCount() + " threads waiting";
+        PoolExhaustedException exception = new PoolExhaustedException(errorMessage, holders);
+        log.warn(exception.getMessage());
+        return exception;
+    }
+
+    private void releaseConnection(PooledConnection connection) {
+        connection.markReturned();
+        if (connection.isExpired()) {
+            removeConnection(connection);
+            addConnectionAsync(); //replacement of the expired connection
+            return;
         }
-        availableConnections.removeAll(connections);
-        return closed;
+        connection.setLastAccessTimeStamp(System.currentTimeMillis());
+        connectionBag.requite(connection);
+    }
+
+    /**
+     * Removes borrowed or reserved connection from the pool and closes it
+     */
+    private void removeConnection(PooledConnection connection) {
+        if (!connectionBag.remove(connection)) return;
+        try {
+            closeConnection(connection);
+        } catch (SQLException e) {
+            log.warn("Error while closing removed connection", e);
+        }
+    }
+
+    private void closeConnection(PooledConnection connection) throws SQLException {
+        totalConnections.decrementAndGet();
+        connection.getStatementCache().close();
+        connection.getConnection().close();
     }
 
     private PooledConnection createConnection() {
@@ -148,6 +323,7 @@ public class SqlConnectionPool implements ConnectionPool {
             Connection connection = DriverManager.getConnection(config.url(), config.username(), config.password());
             pooledConnection = new PooledConnection(connection);
         } catch (SQLException e) {
+            creationFailures.increment();
             String errorMessage = "Error while creating connection: " + e.getMessage() + ", probably database is down";
             log.error(errorMessage, e);
             throw new PoolException(errorMessage, e);
@@ -157,7 +333,26 @@ public class SqlConnectionPool implements ConnectionPool {
 
     private void initializePoolWithMinimumConnections() {
         for (int i = 0; i < config.minAvailableConnections(); i++) {
-            availableConnections.add(createConnection());
+            totalConnections.incrementAndGet();
+            connectionBag.add(createConnection());
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            mBeanName = new ObjectName(MBEAN_NAME_PATTERN + poolCounter.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, mBeanName);
+        } catch (JMException e) {
+            log.warn("Can't register connection pool MBean", e); //pool works without JMX
+        }
+    }
+
+    private void unregisterMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (mBeanName != null && mBeanServer.isRegistered(mBeanName)) mBeanServer.unregisterMBean(mBeanName);
+        } catch (JMException e) {
+            log.warn("Can't unregister connection pool MBean", e);
         }
     }
 
@@ -174,26 +369,57 @@ public class SqlConnectionPool implements ConnectionPool {
     /**
      * A wrapper for {@link Connection} class, instead closing the connection
      * it delegates to connection pool for closing. And also it have
-     * last access time for knowing if connection expired
+     * last access time for knowing if connection expired.
+     * Prepared statements are taken from the connection's {@link StatementCache}
      */
-    private class PooledConnection implements SqlPooledConnection {
+    private class PooledConnection implements SqlPooledConnection, ConnectionBag.BagEntry {
+        private final AtomicInteger state = new AtomicInteger(ConnectionBag.STATE_NOT_IN_USE);
         private Connection connection;
-        private long lastAccessTimeStamp;
+        private StatementCache statementCache;
+        private final long expirationTimeStamp;
+        private volatile long lastAccessTimeStamp;
+        private volatile long borrowTimeStamp;
+        private volatile String borrowThreadName;
+        private volatile ScheduledFuture<?> leakDetectionTask;
 
         private PooledConnection(Connection connection) {
             this.connection = connection;
+            this.lastAccessTimeStamp = System.currentTimeMillis();
+            this.expirationTimeStamp = calculateExpirationTime(lastAccessTimeStamp);
+            this.statementCache = new StatementCache(connection, config.statementCacheSize(),
+                    statementCacheHits, statementCacheMisses);
         }
 
         @Override
         public PreparedStatement prepareStatement(String sql) {
             try {
-                return connection.prepareStatement(sql);
+                return statementCache.prepareStatement(sql);
+            } catch (SQLException e) {
+                log.error("Error while getting preparedStatement from connection");
+                throw new PoolException(e);
+            }
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) {
+            try {
+                return statementCache.prepareStatement(sql, autoGeneratedKeys);
             } catch (SQLException e) {
                 log.error("Error while getting preparedStatement from connection");
                 throw new PoolException(e);
             }
         }
 
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) {
+            try {
+                return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+            } catch (SQLException e) {
+                log.error("Error while preparing cursor statement");
+                throw new PoolException(e);
+            }
+        }
+
         @Override
         public Statement createStatement() {
             try {
@@ -229,7 +455,7 @@ public class SqlConnectionPool implements ConnectionPool {
 
         @Override
         public void setAutoCommit(boolean b) throws SQLException {
-            connection.setAutoCommit(false);
+            connection.setAutoCommit(b);
         }
 
         @Override
@@ -243,17 +469,98 @@ public class SqlConnectionPool implements ConnectionPool {
 
         public boolean isValid() {
             try {
-                return connection.isValid(config.getConnectionValidTimeout());
+                if (connection.isValid(config.getConnectionValidTimeout())) return true;
             } catch (SQLException e) {
                 log.error("connection valid check has failed", e);
-                return false;
             }
+            validationFailures.increment();
+            return false;
+        }
+
+        /**
+         * @return true if connection was returned to the pool during alive bypass window,
+         * such connection is considered alive without validation
+         */
+        private boolean isRecentlyUsed() {
+            return System.currentTimeMillis() - lastAccessTimeStamp < config.aliveBypassWindow();
+        }
+
+        /**
+         * @return true if connection has exceeded its max lifetime and must be closed
+         */
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expirationTimeStamp;
+        }
+
+        /**
+         * Lifetime is shortened by random jitter up to 1/40 of max lifetime,
+         * so connections created at the same time don't expire all at once
+         */
+        private long calculateExpirationTime(long creationTime) {
+            long maxLifetime = config.maxLifetime();
+            if (maxLifetime <= 0) return Long.MAX_VALUE;
+            long jitter = (maxLifetime >= 40) ? ThreadLocalRandom.current().nextLong(maxLifetime / 40) : 0;
+            return creationTime + maxLifetime - jitter;
+        }
+
+        @Override
+        public int getState() {
+            return state.get();
+        }
+
+        @Override
+        public boolean compareAndSetState(int expectedState, int newState) {
+            return state.compareAndSet(expectedState, newState);
+        }
+
+        private void markBorrowed() {
+            borrowThreadName = Thread.currentThread().getName();
+            borrowTimeStamp = System.currentTimeMillis();
+            long leakDetectionThreshold = config.leakDetectionThreshold();
+            if (leakDetectionThreshold > 0) {
+                //stack trace is taken only when leak detection is enabled, it's expensive
+                Exception borrowStackTrace = new Exception("Connection was borrowed here");
+                String threadName = borrowThreadName;
+                leakDetectionTask = houseKeeper.schedule(() -> {
+                    leaks.increment();
+                    log.warn("Possible connection leak: connection is held by thread " + threadName
+                            + " longer than " + leakDetectionThreshold + " ms", borrowStackTrace);
+                }, leakDetectionThreshold);
+            }
+        }
+
+        /**
+         * Records hold time and cancels leak detection
+         */
+        private void markReturned() {
+            holdTime.record(System.currentTimeMillis() - borrowTimeStamp);
+            ScheduledFuture<?> task = leakDetectionTask;
+            if (task != null) {
+                leakDetectionTask = null;
+                task.cancel(false);
+            }
+        }
+
+        private long getBorrowTimeStamp() {
+            return borrowTimeStamp;
+        }
+
+        private String getBorrowThreadName() {
+            return borrowThreadName;
+        }
+
+        private void forceState(int newState) {
+            state.set(newState);
         }
 
         private Connection getConnection() {
             return connection;
         }
 
+        private StatementCache getStatementCache() {
+            return statementCache;
+        }
+
         private void setLastAccessTimeStamp(long time) {
             this.lastAccessTimeStamp = time;
         }
@@ -264,85 +571,131 @@ public class SqlConnectionPool implements ConnectionPool {
     }
 
     /**
-     * Collects all timeout and redundant connections
-     * regularly after a certain time
-     * (the time depends on config connectionIdleTimeout)
-     * and delegates them to connection pool method
-     * {@link #closeConnections(List)} for closing
+     * Does housekeeping of the pool on a scheduled executor: regularly
+     * (the period depends on config connectionIdleTimeout and validationInterval)
+     * closes timeout, expired and redundant idle connections, validates
+     * idle connections which were not used during alive bypass window,
+     * closes dead ones and creates connections to keep minAvailableConnections
+     * idle connections. Connections are reserved in the bag before checking
+     * and closing, so they can't be borrowed at this time. Also creates
+     * connections requested by borrowing threads. Errors are logged,
+     * so they don't stop the housekeeping.
      */
-    private class ConnectionCollector extends TimerTask {
-        private static final int TIMER_DELAY = 0;
-        private Timer timer = new Timer("Connection collector Timer", true);
+    private class HouseKeeper implements Runnable {
+        private static final int INITIAL_DELAY = 0;
+        private static final int THREADS_AMOUNT = 2; //housekeeping doesn't block creation of the connection
+        private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS_AMOUNT, task -> {
+            Thread thread = new Thread(task, "Connection pool house keeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private HouseKeeper() {
+            //leak detection task is cancelled on each return of the connection, it mustn't stay in the queue
+            executor.setRemoveOnCancelPolicy(true);
+        }
+
+        public void start(long housekeepingPeriod) {
+            executor.scheduleWithFixedDelay(this, INITIAL_DELAY, housekeepingPeriod, TimeUnit.MILLISECONDS);
+        }
 
-        public void start(long collectingPeriod) {
-            timer.schedule(this, TIMER_DELAY, collectingPeriod);
+        /**
+         * @return future of the task or null if task was rejected because house keeper is stopped
+         */
+        public ScheduledFuture<?> schedule(Runnable task, long delay) {
+            try {
+                return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return false if task was rejected because house keeper is stopped
+         */
+        public boolean execute(Runnable task) {
+            try {
+                executor.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
         }
 
         public void stop() {
-            timer.cancel();
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(config.getConnectionValidTimeout(), TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
         @Override
         public void run() {
-            if (availableConnections.size() <= config.minAvailableConnections()) return;
-            lock.lock();
-            log.debug("Starting collect connections");
             try {
-                List<PooledConnection> connectionsToClose = getConnectionsToClose();
-                int closedConnections = closeConnections(connectionsToClose);
-                log.debug(closedConnections + " connections has been closed");
-                log.debug("current connections amount " + (availableConnections.size() + usedConnections.size()));
-                if (availableConnections.size() < config.minAvailableConnections()) {
-                    throw new PoolException("Amount of closed connections exceeds minimum");
-                }
-            } catch (SQLException e) {
-                String errorMessage = "Error on close connection: " + e.getMessage();
-                log.error(errorMessage, e);
-                throw new PoolException(errorMessage, e);
-            } finally {
-                lock.unlock();
+                collectConnections();
+                fillPool();
+            } catch (Exception e) {
+                log.error("Error while housekeeping of the connection pool", e);
             }
         }
 
-        private List<PooledConnection> getConnectionsToClose() {
-            List<PooledConnection> timeoutConnections = getTimeoutConnections();
-            int remains = availableConnections.size() - timeoutConnections.size();
-            //if after closing connection remains less than config minimum connection,
-            //than remove some connections from timeout connections list
-            while (remains < config.minAvailableConnections() && timeoutConnections.size() > 0) {
-                timeoutConnections.remove(timeoutConnections.size() - 1); //remove last connection
-                remains = availableConnections.size() - timeoutConnections.size();
-            }
-            log.debug("Preparing to close " + timeoutConnections.size() + " timeout connections");
-            if (remains == config.minAvailableConnections()) return timeoutConnections;
-            List<PooledConnection> connectionsToClose = new ArrayList<>();
-            List<PooledConnection> redundantConnections = getRedundantConnections();
-            connectionsToClose.addAll(timeoutConnections);
-            connectionsToClose.addAll(redundantConnections);
-            log.debug("Preparing to close " + redundantConnections.size() + " redundant connections");
-            return connectionsToClose;
-        }
-
-        private List<PooledConnection> getTimeoutConnections() {
-            List<PooledConnection> timeoutConnections = new ArrayList<>();
-            for (PooledConnection pooledConnection : availableConnections) {
-                long currentTime = System.currentTimeMillis();
-                long lastAccessTime = pooledConnection.getLastAccessTimeStamp();
-                long idleTime = currentTime - ((lastAccessTime == 0) ? currentTime : lastAccessTime);
-                if (idleTime > config.connectionIdleTimeout()) {
-                    timeoutConnections.add(pooledConnection);
+        private void collectConnections() {
+            List<PooledConnection> idleConnections = connectionBag.values(ConnectionBag.STATE_NOT_IN_USE);
+            if (idleConnections.isEmpty()) return;
+            log.debug("Starting collect connections");
+            int idleCount = idleConnections.size();
+            int closedConnections = 0;
+            int deadConnections = 0;
+            long currentTime = System.currentTimeMillis();
+            for (PooledConnection connection : sortByLastAccessTime(idleConnections)) {
+                if (!connectionBag.reserve(connection)) { //borrowed meanwhile
+                    idleCount--;
+                    continue;
+                }
+                long idleTime = currentTime - connection.getLastAccessTimeStamp();
+                boolean timeout = idleTime > config.connectionIdleTimeout();
+                boolean redundant = idleCount > config.maxAvailableConnections();
+                boolean aboveMinimum = idleCount > config.minAvailableConnections();
+                if (connection.isExpired() || ((timeout || redundant) && aboveMinimum)) {
+                    removeConnection(connection);
+                    idleCount--;
+                    closedConnections++;
+                } else if (!connection.isRecentlyUsed() && !connection.isValid()) {
+                    removeConnection(connection);
+                    idleCount--;
+                    deadConnections++;
+                } else {
+                    connectionBag.unreserve(connection);
                 }
             }
-            return timeoutConnections;
+            log.debug(closedConnections + " connections has been closed, " + deadConnections + " dead connections");
+            log.debug("current connections amount " + totalConnections.get());
         }
 
-        private List<PooledConnection> getRedundantConnections() {
-            List<PooledConnection> redundantConnections = new ArrayList<>();
-            int redundantAmount = availableConnections.size() - config.maxAvailableConnections();
-            for (int i = 0; i < redundantAmount; i++) {
-                redundantConnections.add(availableConnections.get(i));
+        /**
+         * Creates connections in background until there are minAvailableConnections idle connections
+         */
+        private void fillPool() {
+            int idleCount = connectionBag.values(ConnectionBag.STATE_NOT_IN_USE).size() + pendingCreations.get();
+            for (int i = idleCount; i < config.minAvailableConnections() && reserveConnectionSlot(); i++) {
+                pendingCreations.incrementAndGet();
+                addConnection();
+                if (lastCreationFailure != null) break; //probably database is down, next time
             }
-            return redundantConnections;
+        }
+
+        /**
+         * The longest idle connections go first. Time stamps are copied before sorting,
+         * because connections can be returned meanwhile
+         */
+        private List<PooledConnection> sortByLastAccessTime(List<PooledConnection> connections) {
+            return connections.stream()
+                    .map(connection -> new AbstractMap.SimpleEntry<>(connection, connection.getLastAccessTimeStamp()))
+                    .sorted(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
         }
     }
 }
@@ -8,6 +8,20 @@ import java.sql.Statement;
 public interface SqlPooledConnection extends AutoCloseable {
     public PreparedStatement prepareStatement(String sql);
 
+    /**
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys);
+
+    /**
+     * Prepares statement for the cursor, such statement is not cached,
+     * because its settings (for example, fetch size) are specific for the reading
+     *
+     * @param resultSetType        one of the {@link java.sql.ResultSet} TYPE constants
+     * @param resultSetConcurrency one of the {@link java.sql.ResultSet} CONCUR constants
+     */
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency);
+
     public Statement createStatement();
 
     public DatabaseMetaData getMetaData();
@@ -0,0 +1,161 @@
+package com.epam.store.dbpool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the prepared statements of one connection, keyed by SQL text.
+ * Statements are given out wrapped, closing of the wrapper clears parameters
+ * of the statement and returns it to the cache instead of real closing.
+ * Statements which are evicted from the cache are closed. If the statement
+ * for the same SQL is still in use (for example, nested query while reading
+ * the result set), a new not cached statement is prepared.
+ * <p>
+ * Cache is not thread safe, as well as connection it belongs to
+ * is used by one thread at a time.
+ */
+class StatementCache {
+    private static final Logger log = LoggerFactory.getLogger(StatementCache.class);
+    private static final String CLOSE_METHOD_NAME = "close";
+    private static final String IS_CLOSED_METHOD_NAME = "isClosed";
+    private static final String GENERATED_KEYS_KEY_PREFIX = "KEYS:";
+    private final Connection connection;
+    private final int maxSize;
+    private final AtomicLong hitCounter;
+    private final AtomicLong missCounter;
+    private final Map<String, CachedStatement> statements;
+
+    /**
+     * @param hitCounter  counter which is incremented when statement is taken from the cache
+     * @param missCounter counter which is incremented when statement is prepared
+     */
+    StatementCache(Connection connection, int maxSize, AtomicLong hitCounter, AtomicLong missCounter) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hitCounter = hitCounter;
+        this.missCounter = missCounter;
+        this.statements = new LinkedHashMap<String, CachedStatement>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) return false;
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        return prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS},
+     *                          statements with different flag are cached separately
+     */
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0) return connection.prepareStatement(sql, autoGeneratedKeys);
+        String key = (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) ? GENERATED_KEYS_KEY_PREFIX + sql : sql;
+        CachedStatement cachedStatement = statements.get(key);
+        if (cachedStatement != null) {
+            if (cachedStatement.inUse) {
+                missCounter.incrementAndGet();
+                return connection.prepareStatement(sql, autoGeneratedKeys);
+            }
+            hitCounter.incrementAndGet();
+        } else {
+            missCounter.incrementAndGet();
+            cachedStatement = new CachedStatement(connection.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cachedStatement);
+        }
+        cachedStatement.inUse = true;
+        return cachedStatement.proxy;
+    }
+
+    /**
+     * Closes all cached statements, must be called before closing of the connection
+     */
+    void close() {
+        List<CachedStatement> cachedStatements = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cachedStatement : cachedStatements) {
+            cachedStatement.closeStatement();
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args); //equals and hashCode of the proxy are identity based
+            }
+            String methodName = method.getName();
+            if (CLOSE_METHOD_NAME.equals(methodName) && method.getParameterCount() == 0) {
+                release();
+                return null;
+            }
+            if (IS_CLOSED_METHOD_NAME.equals(methodName) && method.getParameterCount() == 0) {
+                return !inUse || statement.isClosed();
+            }
+            if (!inUse) throw new SQLException("Statement is closed");
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Returns statement to the cache cleared of parameters and batch,
+         * or closes it if it was evicted while in use
+         */
+        private void release() throws SQLException {
+            if (!inUse) return;
+            inUse = false;
+            if (evicted) {
+                statement.close();
+                return;
+            }
+            statement.clearParameters();
+            statement.clearBatch(); //rows of the not executed batch must not be executed by the next user
+            statement.clearWarnings();
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) closeStatement();
+        }
+
+        private void closeStatement() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("Error while closing cached statement", e);
+            }
+        }
+    }
+}
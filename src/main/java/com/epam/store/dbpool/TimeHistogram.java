@@ -0,0 +1,48 @@
+package com.epam.store.dbpool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of durations with fixed buckets in milliseconds.
+ * Bucket i counts durations which are not greater than {@link #BUCKET_BOUNDS}[i]
+ * and greater than the previous bound, the last bucket counts longer durations.
+ */
+class TimeHistogram {
+    static final long[] BUCKET_BOUNDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 30000}; //ms
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    private final LongAdder totalTime = new LongAdder();
+    private final LongAdder totalCount = new LongAdder();
+    private volatile long maxTime;
+
+    void record(long millis) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalTime.add(millis);
+        totalCount.increment();
+        if (millis > maxTime) maxTime = millis; //the maximum may be lost under contention, it's only a statistic
+    }
+
+    /**
+     * @return snapshot of the bucket counts, its length is one more than amount of bounds
+     */
+    long[] getCounts() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    double getMean() {
+        long count = totalCount.sum();
+        return (count == 0) ? 0 : (double) totalTime.sum() / count;
+    }
+
+    long getMax() {
+        return maxTime;
+    }
+}
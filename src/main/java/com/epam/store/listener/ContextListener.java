@@ -1,6 +1,6 @@
 package com.epam.store.listener;
 
-import com.epam.store.dao.DaoFactory;
+import com.epam.store.dao.Dialect;
 import com.epam.store.dao.JdbcDaoFactory;
 import com.epam.store.dbpool.ConnectionPool;
 import com.epam.store.dbpool.SqlConnectionPool;
@@ -17,6 +17,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -35,8 +36,10 @@ public class ContextListener implements ServletContextListener {
     private static final Logger log = LoggerFactory.getLogger(ContextListener.class);
     private static final String SETTINGS_CLASS = "com.epam.store.config.ApplicationSettings";
     private static final String SCRIPT_FILE_NAME = "online-store.sql";
-    private static final String TABLE_COUNT_QUERY = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC';";
+    private static final String[] TABLE_TYPES = {"TABLE"};
     private ConnectionPool connectionPool;
+    private JdbcDaoFactory daoFactory;
+    private ProductService productService;
 
     @Override
     public void contextInitialized(ServletContextEvent arg) {
@@ -52,15 +55,22 @@ public class ContextListener implements ServletContextListener {
         } catch (SQLException | IOException e) {
             throw new ApplicationInitializationException(e);
         }
-        DaoFactory daoFactory = new JdbcDaoFactory(connectionPool);
+        daoFactory = new JdbcDaoFactory(connectionPool);
         servletContext.setAttribute("daoFactory", daoFactory);
 
+        //statuses and roles are loaded once and shared by services
+        ReferenceDataService referenceDataService = new ReferenceDataService(daoFactory);
+        servletContext.setAttribute(getNameForService(ReferenceDataService.class), referenceDataService);
+
         //set services to servlet context, the class name is used as an attribute name
-        servletContext.setAttribute(getNameForService(ProductService.class), new ProductService(daoFactory));
-        servletContext.setAttribute(getNameForService(UserService.class), new UserService(daoFactory));
+        productService = new ProductService(daoFactory);
+        servletContext.setAttribute(getNameForService(ProductService.class), productService);
+        servletContext.setAttribute(getNameForService(UserService.class),
+                new UserService(daoFactory, referenceDataService));
         servletContext.setAttribute(getNameForService(ImageService.class), new ImageService(daoFactory));
-        servletContext.setAttribute(getNameForService(PurchaseService.class), new PurchaseService(daoFactory));
-        CategoryService categoryService = new CategoryService(daoFactory);
+        servletContext.setAttribute(getNameForService(PurchaseService.class),
+                new PurchaseService(daoFactory, referenceDataService));
+        CategoryService categoryService = new CategoryService(daoFactory, productService);
         servletContext.setAttribute(getNameForService(CategoryService.class), categoryService);
 
         //set categories list to application context to have access to it from everywhere
@@ -79,12 +89,16 @@ public class ContextListener implements ServletContextListener {
         return clazz.getSimpleName();
     }
 
+    /**
+     * @return true if there are no tables where the dialect of the database looks for the application tables
+     */
     private boolean isDatabaseEmpty(SqlPooledConnection connection) throws SQLException {
-        Statement statement = connection.createStatement();
-        ResultSet rs = statement.executeQuery(TABLE_COUNT_QUERY);
-        rs.next();
-        long count = rs.getLong(1);
-        return count == 0;
+        DatabaseMetaData metaData = connection.getMetaData();
+        Dialect dialect = Dialect.forDatabase(metaData);
+        try (ResultSet rs = metaData.getTables(dialect.getCatalog(metaData), dialect.getSchema(metaData),
+                null, TABLE_TYPES)) {
+            return !rs.next();
+        }
     }
 
     private void deployDatabaseFromScript(SqlPooledConnection connection) throws IOException, SQLException {
@@ -108,6 +122,15 @@ public class ContextListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent arg) {
+        productService.shutdown();
+        logEntityCacheStatistics();
         connectionPool.shutdown();
     }
+
+    private void logEntityCacheStatistics() {
+        daoFactory.getEntityCacheStatistics().forEach((className, stats) ->
+                log.info("Entity cache of {}: hits: {}, misses: {}, hit rate: {}, evictions: {}", className,
+                        stats.hitCount(), stats.missCount(), String.format("%.2f", stats.hitRate()),
+                        stats.evictionCount()));
+    }
 }
\ No newline at end of file
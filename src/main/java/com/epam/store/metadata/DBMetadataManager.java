@@ -6,6 +6,8 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,9 +21,17 @@ import java.util.Map;
  * and the Deleted column
  */
 public class DBMetadataManager {
+    private final String catalog;
+    private final String schemaPattern;
     private Map<String, DatabaseTable> tables;
 
-    public DBMetadataManager(DatabaseMetaData databaseMetaData) {
+    /**
+     * @param catalog       catalog of the application tables, null if tables are searched in all catalogs
+     * @param schemaPattern schema of the application tables, null if tables are searched in all schemas
+     */
+    public DBMetadataManager(DatabaseMetaData databaseMetaData, String catalog, String schemaPattern) {
+        this.catalog = catalog;
+        this.schemaPattern = schemaPattern;
         tables = createTables(databaseMetaData);
     }
 
@@ -35,6 +45,13 @@ public class DBMetadataManager {
         return getTableByName(tableName);
     }
 
+    /**
+     * @return all tables of the database
+     */
+    public Collection<DatabaseTable> getTables() {
+        return Collections.unmodifiableCollection(tables.values());
+    }
+
     public DatabaseTable getTableByName(String tableName) {
         DatabaseTable databaseTable = tables.get(tableName);
         if (databaseTable == null) throw new MetadataException("Can't find table " + tableName);
@@ -88,10 +105,10 @@ public class DBMetadataManager {
     private Map<String, List<String>> getColumnsByTableNameMap(DatabaseMetaData databaseMetaData) {
         Map<String, List<String>> columnsByTableName = new HashMap<>();
         try {
-            ResultSet tablesResultSet = databaseMetaData.getTables(null, "PUBLIC", null, null);
+            ResultSet tablesResultSet = databaseMetaData.getTables(catalog, schemaPattern, null, null);
             while (tablesResultSet.next()) {
                 String tableName = tablesResultSet.getString(3);
-                ResultSet columnsResultSet = databaseMetaData.getColumns(null, null, tableName, null);
+                ResultSet columnsResultSet = databaseMetaData.getColumns(catalog, schemaPattern, tableName, null);
                 List<String> columnsList = new ArrayList<>();
                 while (columnsResultSet.next()) {
                     String columnName = columnsResultSet.getString("COLUMN_NAME");
@@ -110,7 +127,7 @@ public class DBMetadataManager {
     private List<String> getUniqueConstraintColumns(String tableName, DatabaseMetaData databaseMetaData) {
         ArrayList<String> uniqueColumns = new ArrayList<>();
         try {
-            ResultSet indexInfo = databaseMetaData.getIndexInfo(null, null, tableName, true, false);
+            ResultSet indexInfo = databaseMetaData.getIndexInfo(catalog, schemaPattern, tableName, true, false);
             while (indexInfo.next()) {
                 String columnName = indexInfo.getString("COLUMN_NAME");
                 boolean unique = !indexInfo.getBoolean("NON_UNIQUE");
@@ -4,55 +4,73 @@ package com.epam.store.metadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Contains field names of certain entity and their types
- * Allows invoke entity setters and getters by name
+ * Allows invoke entity setters and getters by name or by field index.
+ * Getters, setters and constructor are compiled into functions
+ * with {@link LambdaMetafactory} once, when manager is created,
+ * so invoking them doesn't use reflection.
+ * Fields can be also read directly, bypassing getters, for example
+ * to take id of the lazy reference without loading it.
  *
  * @param <T> type of entity
  */
 public class EntityManager<T> {
     private static final Logger log = LoggerFactory.getLogger(EntityManager.class);
-    private static final Map<Class, EntityManager> cache = new HashMap<>();
-    private Map<String, Method> setterByFieldName;
-    private Map<String, Method> getterByFieldName;
-    private List<String> fieldsNames;
-    private Class<T> type;
+    private static final Map<Class, EntityManager> cache = new ConcurrentHashMap<>();
+    private static final String GETTER_PREFIX = "get";
+    private static final String SETTER_PREFIX = "set";
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final Map<String, Integer> fieldIndexByName = new HashMap<>();
+    private final List<String> fieldsNames = new ArrayList<>();
+    private final List<Class<?>> fieldsTypes = new ArrayList<>();
+    private final List<MethodHandle> fieldReaders = new ArrayList<>();
+    private final List<Function<Object, Object>> getters;
+    private final List<BiConsumer<Object, Object>> setters;
+    private final Supplier<T> constructor;
+    private final Class<T> type;
 
     @SuppressWarnings("unchecked")
-    public static synchronized <T> EntityManager<T> getManager(Class<T> type) {
-        EntityManager<T> entityManager = cache.get(type);
-        if (entityManager == null) entityManager = new EntityManager<>(type);
-        cache.put(type, entityManager);
-        return entityManager;
+    public static <T> EntityManager<T> getManager(Class<T> type) {
+        return cache.computeIfAbsent(type, EntityManager::new);
     }
 
     private EntityManager(Class<T> type) {
         log.debug("initializing entity metadata");
-        fieldsNames = new ArrayList<>();
-        setterByFieldName = new LinkedHashMap<>();
-        getterByFieldName = new LinkedHashMap<>();
         this.type = type;
 
-        addFieldsNamesFromFields(type.getSuperclass().getDeclaredFields()); //getting names from superclass
-        addFieldsNamesFromFields(type.getDeclaredFields());
+        addFields(type.getSuperclass().getDeclaredFields()); //getting names from superclass
+        addFields(type.getDeclaredFields());
 
-        addSetterAndGettersFromMethods(type.getSuperclass().getDeclaredMethods()); //getting methods names from superclass
-        addSetterAndGettersFromMethods(type.getDeclaredMethods());
+        getters = new ArrayList<>(Collections.nCopies(fieldsNames.size(), null));
+        setters = new ArrayList<>(Collections.nCopies(fieldsNames.size(), null));
+        addSettersAndGetters(type.getSuperclass().getDeclaredMethods()); //getting methods from superclass
+        addSettersAndGetters(type.getDeclaredMethods());
+        constructor = createConstructor();
     }
 
     public Class<?> getFieldType(String fieldName) {
-        try {
-            return type.getDeclaredField(fieldName).getType(); //getting type of the field by name
-        } catch (NoSuchFieldException e) {
-            String errorMessage = "Exception while getting field type from entity: ";
-            log.error(errorMessage, e);
-            throw new MetadataException(errorMessage, e);
+        Integer fieldIndex = fieldIndexByName.get(fieldName);
+        if (fieldIndex == null) {
+            String errorMessage = "Exception while getting field type from entity: no field " + fieldName;
+            log.error(errorMessage);
+            throw new MetadataException(errorMessage);
         }
+        return fieldsTypes.get(fieldIndex);
     }
 
     public Class<T> getEntityClass() {
@@ -60,11 +78,38 @@ public class EntityManager<T> {
     }
 
     public boolean hasField(String fieldName) {
-        return fieldsNames.contains(fieldName);
+        return fieldIndexByName.containsKey(fieldName);
+    }
+
+    /**
+     * @return index of the field for index-based invoking of getters and setters or -1 if there is no such field
+     */
+    public int getFieldIndex(String fieldName) {
+        Integer fieldIndex = fieldIndexByName.get(fieldName);
+        return fieldIndex != null ? fieldIndex : -1;
     }
 
     public List<String> getFieldsNames() {
-        return fieldsNames;
+        return Collections.unmodifiableList(fieldsNames);
+    }
+
+    /**
+     * Creates new entity with no-arg constructor
+     */
+    public T newInstance() {
+        return constructor.get();
+    }
+
+    /**
+     * Creates shallow copy of the entity, fields without getter or setter are not copied
+     */
+    public T copy(T entity) {
+        T copy = newInstance();
+        for (int fieldIndex = 0; fieldIndex < fieldsNames.size(); fieldIndex++) {
+            if (getters.get(fieldIndex) == null || setters.get(fieldIndex) == null) continue;
+            setters.get(fieldIndex).accept(copy, getters.get(fieldIndex).apply(entity));
+        }
+        return copy;
     }
 
     /**
@@ -74,11 +119,19 @@ public class EntityManager<T> {
      * @param args parameters of the setter
      */
     public void invokeSetterByFieldName(String fieldName, Object targetToInvoke, Object... args) {
-        try {
-            setterByFieldName.get(fieldName).invoke(targetToInvoke, args);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new MetadataException(e);
-        }
+        invokeSetter(getExistingFieldIndex(fieldName), targetToInvoke, args[0]);
+    }
+
+    /**
+     * Invoke setter by field index in specified object
+     * @param fieldIndex index of the field from {@link #getFieldIndex(String)}
+     * @param targetToInvoke object for invoke setter
+     * @param value parameter of the setter
+     */
+    public void invokeSetter(int fieldIndex, Object targetToInvoke, Object value) {
+        BiConsumer<Object, Object> setter = setters.get(fieldIndex);
+        if (setter == null) throw new MetadataException("No setter for field " + fieldsNames.get(fieldIndex));
+        setter.accept(targetToInvoke, value);
     }
 
     /**
@@ -87,13 +140,48 @@ public class EntityManager<T> {
      * @param targetToInvoke object for invoke getter
      */
     public Object invokeGetter(String fieldName, Object targetToInvoke) {
+        return invokeGetter(getExistingFieldIndex(fieldName), targetToInvoke);
+    }
+
+    /**
+     * Invoke getter by field index in specified object
+     * @param fieldIndex index of the field from {@link #getFieldIndex(String)}
+     * @param targetToInvoke object for invoke getter
+     */
+    public Object invokeGetter(int fieldIndex, Object targetToInvoke) {
+        Function<Object, Object> getter = getters.get(fieldIndex);
+        if (getter == null) throw new MetadataException("No getter for field " + fieldsNames.get(fieldIndex));
+        return getter.apply(targetToInvoke);
+    }
+
+    /**
+     * Reads value of the field directly, getter is not invoked
+     * @param fieldName name of the field to read
+     * @param target object to read from
+     */
+    public Object readField(String fieldName, Object target) {
+        return readField(getExistingFieldIndex(fieldName), target);
+    }
+
+    /**
+     * Reads value of the field directly, getter is not invoked
+     * @param fieldIndex index of the field from {@link #getFieldIndex(String)}
+     * @param target object to read from
+     */
+    public Object readField(int fieldIndex, Object target) {
         try {
-            return getterByFieldName.get(fieldName).invoke(targetToInvoke);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new MetadataException(e);
+            return (Object) fieldReaders.get(fieldIndex).invokeExact(target);
+        } catch (Throwable e) {
+            throw new MetadataException("Can't read field " + fieldsNames.get(fieldIndex), e);
         }
     }
 
+    private int getExistingFieldIndex(String fieldName) {
+        Integer fieldIndex = fieldIndexByName.get(fieldName);
+        if (fieldIndex == null) throw new MetadataException("No field " + fieldName + " in " + type.getName());
+        return fieldIndex;
+    }
+
     private String getFieldNameFromMethodName(String methodName) {
         StringBuilder sb = new StringBuilder();
         methodName = methodName.substring(3); //remove get or set prefix
@@ -102,22 +190,102 @@ public class EntityManager<T> {
         return sb.toString();
     }
 
-    private void addFieldsNamesFromFields(Field[] fields) {
+    private void addFields(Field[] fields) {
         for (Field field : fields) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue; //not a column
+            fieldIndexByName.put(field.getName(), fieldsNames.size());
             fieldsNames.add(field.getName());
+            fieldsTypes.add(field.getType());
+            fieldReaders.add(createFieldReader(field));
+        }
+    }
+
+    private MethodHandle createFieldReader(Field field) {
+        try {
+            field.setAccessible(true);
+            return lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new MetadataException("Can't create reader of the field " + field, e);
         }
     }
 
-    private void addSetterAndGettersFromMethods(Method[] methods) {
+    private void addSettersAndGetters(Method[] methods) {
         for (Method method : methods) {
             String methodName = method.getName();
-            String fieldName = getFieldNameFromMethodName(methodName);
-            if (methodName.startsWith("set")) {
-                setterByFieldName.put(fieldName, method);
-            }
-            if (methodName.startsWith("get")) {
-                getterByFieldName.put(fieldName, method);
-            }
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()) continue;
+            if (methodName.length() <= GETTER_PREFIX.length()) continue;
+            boolean getter = methodName.startsWith(GETTER_PREFIX) && method.getParameterCount() == 0;
+            boolean setter = methodName.startsWith(SETTER_PREFIX) && method.getParameterCount() == 1;
+            if (!getter && !setter) continue;
+            Integer fieldIndex = fieldIndexByName.get(getFieldNameFromMethodName(methodName));
+            if (fieldIndex == null) continue; //method doesn't correspond to the field
+            if (getter) getters.set(fieldIndex, createGetter(method));
+            if (setter) setters.set(fieldIndex, createSetter(method));
         }
     }
+
+    @SuppressWarnings("unchecked")
+    private Function<Object, Object> createGetter(Method method) {
+        try {
+            MethodHandle getterHandle = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    getterHandle,
+                    MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+            return (Function<Object, Object>) callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new MetadataException("Can't create getter for " + method, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private BiConsumer<Object, Object> createSetter(Method method) {
+        try {
+            MethodHandle setterHandle = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    setterHandle,
+                    MethodType.methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new MetadataException("Can't create setter for " + method, e);
+        }
+    }
+
+    /**
+     * Abstract class or class without public no-arg constructor can't be instantiated,
+     * its manager throws exception on creating instance, but can be used for getters and setters
+     */
+    @SuppressWarnings("unchecked")
+    private Supplier<T> createConstructor() {
+        MethodHandle constructorHandle;
+        try {
+            if (Modifier.isAbstract(type.getModifiers())) throw new InstantiationException(type.getName());
+            constructorHandle = lookup.findConstructor(type, MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            return () -> {
+                throw new MetadataException("Can't create instance of " + type.getName(), e);
+            };
+        }
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructorHandle,
+                    MethodType.methodType(type));
+            return (Supplier<T>) callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            throw new MetadataException("Can't create constructor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * @return wrapper type for primitive, because functions work with objects
+     */
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
 }
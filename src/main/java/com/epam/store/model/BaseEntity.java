@@ -3,6 +3,7 @@ package com.epam.store.model;
 
 public abstract class BaseEntity {
     private Long id;
+    private transient LazyLoader lazyLoader;
 
     protected BaseEntity() {
     }
@@ -19,6 +20,29 @@ public abstract class BaseEntity {
         this.id = id;
     }
 
+    /**
+     * Marks this object as a lazy reference, which has only id.
+     * The state is loaded by the loader on the first access
+     * through the getter of the entity which holds the reference.
+     */
+    public void markAsLazyReference(LazyLoader lazyLoader) {
+        this.lazyLoader = lazyLoader;
+    }
+
+    public boolean isLazyReference() {
+        return lazyLoader != null;
+    }
+
+    /**
+     * @return loaded entity if the reference is lazy, otherwise the reference itself
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T extends BaseEntity> T resolveReference(T reference) {
+        if (reference == null || !reference.isLazyReference()) return reference;
+        BaseEntity lazyReference = reference;
+        return (T) lazyReference.lazyLoader.load(lazyReference.getClass(), lazyReference.getId());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,12 @@
+package com.epam.store.model;
+
+/**
+ * Loads the state of the entity which was read as a lazy reference.
+ * See {@link BaseEntity#markAsLazyReference(LazyLoader)}
+ */
+public interface LazyLoader {
+    /**
+     * @return loaded entity or null if there is no entity with such id
+     */
+    public <T extends BaseEntity> T load(Class<T> type, long id);
+}
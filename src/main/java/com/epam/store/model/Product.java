@@ -41,6 +41,7 @@ public class Product extends BaseEntity {
     }
 
     public Price getPrice() {
+        price = resolveReference(price);
         return price;
     }
 
@@ -57,6 +58,7 @@ public class Product extends BaseEntity {
     }
 
     public Category getCategory() {
+        category = resolveReference(category);
         return category;
     }
 
@@ -65,6 +67,7 @@ public class Product extends BaseEntity {
     }
 
     public Image getImage() {
+        image = resolveReference(image);
         return image;
     }
 
@@ -19,6 +19,7 @@ public class Purchase extends BaseEntity {
     }
 
     public Product getProduct() {
+        product = resolveReference(product);
         return product;
     }
 
@@ -27,6 +28,7 @@ public class Purchase extends BaseEntity {
     }
 
     public Price getPrice() {
+        price = resolveReference(price);
         return price;
     }
 
@@ -35,6 +37,7 @@ public class Purchase extends BaseEntity {
     }
 
     public Date getDate() {
+        date = resolveReference(date);
         return date;
     }
 
@@ -43,6 +46,7 @@ public class Purchase extends BaseEntity {
     }
 
     public Status getStatus() {
+        status = resolveReference(status);
         return status;
     }
 
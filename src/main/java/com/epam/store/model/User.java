@@ -35,6 +35,7 @@ public class User extends BaseEntity {
     }
 
     public Password getPassword() {
+        password = resolveReference(password);
         return password;
     }
 
@@ -51,6 +52,7 @@ public class User extends BaseEntity {
     }
 
     public Role getRole() {
+        role = resolveReference(role);
         return role;
     }
 
@@ -0,0 +1,92 @@
+package com.epam.store.service;
+
+import com.epam.store.model.Product;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache of the product lists by category name.
+ * Concurrent requests of the absent category share one loading.
+ * After refresh period the list is reloaded in background on the next request,
+ * meanwhile the stale list is given, so requests don't wait for the database.
+ * List which was not requested during expiration period is removed.
+ * Lists are unmodifiable, they are shared by all threads.
+ * Invalidation doesn't cancel loadings which are in progress, such loading can store
+ * the list read before the change, so each list is marked with the generation of the cache
+ * at the start of its loading, and lists of the previous generations are loaded again when requested.
+ */
+class CatalogCache {
+    private static final long MAX_CATEGORIES = 1000;
+    private static final long REFRESH_PERIOD = 1; //minutes
+    private static final long EXPIRATION_PERIOD = 30; //minutes
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Catalog cache refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong generation = new AtomicLong();
+    private final LoadingCache<String, CatalogEntry> productsByCategory;
+
+    /**
+     * @param loader reads products of the category by its name from the database
+     */
+    CatalogCache(Function<String, List<Product>> loader) {
+        CacheLoader<String, CatalogEntry> cacheLoader = new CacheLoader<String, CatalogEntry>() {
+            @Override
+            public CatalogEntry load(String categoryName) {
+                long loadingGeneration = generation.get(); //taken before reading from the database
+                return new CatalogEntry(loadingGeneration, Collections.unmodifiableList(loader.apply(categoryName)));
+            }
+        };
+        productsByCategory = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CATEGORIES)
+                .refreshAfterWrite(REFRESH_PERIOD, TimeUnit.MINUTES)
+                .expireAfterAccess(EXPIRATION_PERIOD, TimeUnit.MINUTES)
+                .build(CacheLoader.asyncReloading(cacheLoader, refreshExecutor));
+    }
+
+    List<Product> getProducts(String categoryName) {
+        try {
+            while (true) {
+                CatalogEntry entry = productsByCategory.getUnchecked(categoryName);
+                if (entry.generation == generation.get()) return entry.products;
+                productsByCategory.asMap().remove(categoryName, entry); //loaded before the last invalidation
+            }
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Removes all lists, must be called after commit of changing of products or categories
+     */
+    void invalidateAll() {
+        generation.incrementAndGet();
+        productsByCategory.invalidateAll();
+    }
+
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static class CatalogEntry {
+        private final long generation;
+        private final List<Product> products;
+
+        private CatalogEntry(long generation, List<Product> products) {
+            this.generation = generation;
+            this.products = products;
+        }
+    }
+}
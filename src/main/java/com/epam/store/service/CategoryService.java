@@ -10,9 +10,14 @@ import java.util.List;
 public class CategoryService {
     private static final String CATEGORY_NAME_COLUMN = "NAME";
     private DaoFactory daoFactory;
+    private ProductService productService;
 
-    public CategoryService(DaoFactory daoFactory) {
+    /**
+     * @param productService its catalog cache is invalidated on changing of the categories
+     */
+    public CategoryService(DaoFactory daoFactory, ProductService productService) {
         this.daoFactory = daoFactory;
+        this.productService = productService;
     }
 
     public List<Category> getCategories() {
@@ -31,7 +36,9 @@ public class CategoryService {
             Category categoryFromDatabase = categoryDao.findFirstByParameter(CATEGORY_NAME_COLUMN, categoryName);
             if (categoryFromDatabase != null) return null;
             Category category = new Category(categoryName);
-            return categoryDao.insert(category);
+            categoryDao.insert(category);
+            productService.invalidateCatalog();
+            return category;
         }
     }
 
@@ -39,7 +46,9 @@ public class CategoryService {
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<Category> categoryDao = daoSession.getDao(Category.class);
             Long id = category.getId();
-            return id != null && categoryDao.delete(id);
+            boolean deleted = id != null && categoryDao.delete(id);
+            if (deleted) productService.invalidateCatalog();
+            return deleted;
         }
     }
 
@@ -0,0 +1,53 @@
+package com.epam.store.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the list, pages are numbered from one.
+ * List contains at least one page, even if it's empty.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final int number;
+    private final int totalPages;
+
+    Page(List<T> items, int number, long totalItems, int pageSize) {
+        this.items = Collections.unmodifiableList(items);
+        this.number = number;
+        this.totalPages = getTotalPages(totalItems, pageSize);
+    }
+
+    /**
+     * @return number of the existing page, the last page if requested number is greater than amount of pages
+     * @throws ServiceException if page number is not positive
+     */
+    static int clampPageNumber(int pageNumber, long totalItems, int pageSize) {
+        if (pageNumber < 1) throw new ServiceException("Page number must be positive: " + pageNumber);
+        return Math.min(pageNumber, getTotalPages(totalItems, pageSize));
+    }
+
+    private static int getTotalPages(long totalItems, int pageSize) {
+        return (int) Math.max(1, (totalItems + pageSize - 1) / pageSize);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public boolean isFirst() {
+        return number <= 1;
+    }
+
+    public boolean isLast() {
+        return number >= totalPages;
+    }
+}
@@ -3,23 +3,92 @@ package com.epam.store.service;
 import com.epam.store.dao.Dao;
 import com.epam.store.dao.DaoFactory;
 import com.epam.store.dao.DaoSession;
+import com.epam.store.dao.FetchPlan;
+import com.epam.store.dao.PageRequest;
 import com.epam.store.model.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 
 public class ProductService {
     private static final String PRODUCT_NAME_COLUMN = "NAME";
     private static final String PRODUCT_ID_COLUMN = "PRODUCT_ID";
     private static final String CATEGORY_ID_COLUMN = "CATEGORY_ID";
+    private static final String IMAGE_FIELD = "image";
+    private static final FetchPlan PRODUCT_LIST_FETCH_PLAN = FetchPlan.all().stub(IMAGE_FIELD);
+    //only ids of the dependencies are needed for deleting
+    private static final FetchPlan DELETING_FETCH_PLAN = FetchPlan.none().stub("category", "price", IMAGE_FIELD);
     private DaoFactory daoFactory;
+    private CatalogCache catalogCache;
 
     public ProductService(DaoFactory daoFactory) {
         this.daoFactory = daoFactory;
+        this.catalogCache =
+                new CatalogCache(categoryName -> getProductsForCategory(categoryName, PRODUCT_LIST_FETCH_PLAN));
     }
 
     public List<Product> getProductsForCategory(String categoryName) {
+        return getProductsForCategory(categoryName, FetchPlan.all());
+    }
+
+    /**
+     * Gets page of the products of the category for displaying in the catalog,
+     * page is cut from the cached list of the category. Images of the products
+     * are loaded without content, only with id.
+     *
+     * @param pageNumber number of the page, starting from one, number after the last page gives the last page
+     */
+    public Page<Product> getCatalogPage(String categoryName, int pageNumber, int pageSize) {
+        List<Product> products = catalogCache.getProducts(categoryName);
+        int number = Page.clampPageNumber(pageNumber, products.size(), pageSize);
+        int fromIndex = (number - 1) * pageSize;
+        int toIndex = Math.min(fromIndex + pageSize, products.size());
+        return new Page<>(products.subList(fromIndex, toIndex), number, products.size(), pageSize);
+    }
+
+    /**
+     * Gets page of the products of the category directly from the database,
+     * only products of the page and their attributes are read.
+     * Images of the products are loaded without content, only with id.
+     *
+     * @param pageNumber number of the page, starting from one, number after the last page gives the last page
+     */
+    public Page<Product> getProductPageForCategory(String categoryName, int pageNumber, int pageSize) {
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            Category category = categoryDao.findFirstByParameter(PRODUCT_NAME_COLUMN, categoryName);
+            if (category == null) {
+                return new Page<>(Collections.emptyList(), Page.clampPageNumber(pageNumber, 0, pageSize), 0, pageSize);
+            }
+            Dao<Product> productDao = daoSession.getDao(Product.class);
+            Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
+            long productsCount = productDao.count(Collections.singletonMap(CATEGORY_ID_COLUMN, category.getId()));
+            int number = Page.clampPageNumber(pageNumber, productsCount, pageSize);
+            List<Product> products = productDao.findByParameter(CATEGORY_ID_COLUMN, category.getId(),
+                    PRODUCT_LIST_FETCH_PLAN, PageRequest.page(number - 1, pageSize));
+            setAttributesToProducts(attributeDao, products);
+            return new Page<>(products, number, productsCount, pageSize);
+        }
+    }
+
+    /**
+     * Removes cached product lists, must be called after changing of the categories
+     */
+    public void invalidateCatalog() {
+        catalogCache.invalidateAll();
+    }
+
+    public void shutdown() {
+        catalogCache.shutdown();
+    }
+
+    private List<Product> getProductsForCategory(String categoryName, FetchPlan fetchPlan) {
         List<Product> productsList = new ArrayList<>();
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<Category> categoryDao = daoSession.getDao(Category.class);
@@ -27,21 +96,22 @@ public class ProductService {
             if (category != null) {
                 Dao<Product> productDao = daoSession.getDao(Product.class);
                 Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
-                productsList = productDao.findByParameter(CATEGORY_ID_COLUMN, category.getId());
-                for (Product product : productsList) {
-                    List<Attribute> attributeList = attributeDao.findByParameter(PRODUCT_ID_COLUMN, product.getId());
-                    product.setAttributes(attributeList);
-                }
+                productsList = productDao.findByParameter(CATEGORY_ID_COLUMN, category.getId(), fetchPlan);
+                setAttributesToProducts(attributeDao, productsList);
             }
         }
         return productsList;
     }
 
     public Product getProductByID(long id) {
+        return getProductByID(id, FetchPlan.all());
+    }
+
+    private Product getProductByID(long id, FetchPlan fetchPlan) {
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<Product> productDao = daoSession.getDao(Product.class);
             Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
-            Product product = productDao.find(id);
+            Product product = productDao.find(id, fetchPlan);
             if (product != null) {
                 List<Attribute> attributeList = attributeDao.findByParameter(PRODUCT_ID_COLUMN, product.getId());
                 product.setAttributes(attributeList);
@@ -59,6 +129,7 @@ public class ProductService {
             insertAttributes(daoSession, product.getAttributes(), product.getId());
             daoSession.endTransaction();
         }
+        catalogCache.invalidateAll();
     }
 
     public boolean isProductExist(String productName) {
@@ -75,32 +146,58 @@ public class ProductService {
     }
 
     public void deleteProduct(long id) {
-        Product product = getProductByID(id);
+        deleteProducts(Collections.singletonList(id));
+    }
+
+    /**
+     * Deletes products together with their attributes, prices and images in one transaction,
+     * products and their attributes are read by one query for all products
+     */
+    public void deleteProducts(Collection<Long> ids) {
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<Product> productDao = daoSession.getDao(Product.class);
+            Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
             Dao<Price> priceDao = daoSession.getDao(Price.class);
             Dao<Image> imageDao = daoSession.getDao(Image.class);
+            List<Product> products = productDao.findAllByIds(ids, DELETING_FETCH_PLAN);
+            setAttributesToProducts(attributeDao, products);
             daoSession.beginTransaction();
-            deleteAttributes(daoSession, product.getAttributes());
-            priceDao.delete(product.getPrice().getId()); //deleting price
-            imageDao.delete(product.getImage().getId()); //deleting image
-            productDao.delete(product.getId()); //deleting product
+            deleteAttributes(daoSession, products.stream().flatMap(product -> product.getAttributes().stream())
+                    .collect(Collectors.toList()));
+            priceDao.deleteAll(products.stream().map(product -> product.getPrice().getId())
+                    .collect(Collectors.toList())); //deleting prices
+            imageDao.deleteAll(products.stream().map(product -> product.getImage().getId())
+                    .collect(Collectors.toList())); //deleting images
+            productDao.deleteAll(products.stream().map(Product::getId).collect(Collectors.toList()));
             daoSession.endTransaction();
         }
+        catalogCache.invalidateAll();
     }
 
 
+    /**
+     * Reads attributes for all products by one query and sets them to products
+     */
+    private void setAttributesToProducts(Dao<Attribute> attributeDao, List<Product> products) {
+        List<Long> productIds = products.stream().map(Product::getId).collect(Collectors.toList());
+        Map<Long, List<Attribute>> attributesByProductId =
+                attributeDao.findGroupedByParameter(PRODUCT_ID_COLUMN, productIds);
+        for (Product product : products) {
+            List<Attribute> attributeList = attributesByProductId.get(product.getId());
+            product.setAttributes(attributeList != null ? attributeList : new ArrayList<>());
+        }
+    }
+
     private void insertAttributes(DaoSession daoSession, List<Attribute> attributes, long productID) {
         Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
-        for (Attribute attribute : attributes) {
-            attributeDao.insertWithAdditionalParameter(attribute, PRODUCT_ID_COLUMN, productID);
-        }
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(PRODUCT_ID_COLUMN, productID);
+        attributeDao.insertAll(attributes, parameters);
     }
 
     private void deleteAttributes(DaoSession daoSession, List<Attribute> attributes) {
         Dao<Attribute> attributeDao = daoSession.getDao(Attribute.class);
-        for (Attribute attribute : attributes) {
-            attributeDao.delete(attribute.getId());
-        }
+        List<Long> attributeIds = attributes.stream().map(Attribute::getId).collect(Collectors.toList());
+        attributeDao.deleteAll(attributeIds);
     }
 }
@@ -14,12 +14,13 @@ import java.util.stream.Collectors;
 public class PurchaseService {
     private static final String USER_ID_COLUMN = "USER_ID";
     private static final String DATE_TIME_COLUMN = "TIME";
-    private static final String STATUS_NAME_COLUMN = "NAME";
 
     private DaoFactory daoFactory;
+    private ReferenceDataService referenceDataService;
 
-    public PurchaseService(DaoFactory daoFactory) {
+    public PurchaseService(DaoFactory daoFactory, ReferenceDataService referenceDataService) {
         this.daoFactory = daoFactory;
+        this.referenceDataService = referenceDataService;
     }
 
     /**
@@ -37,12 +38,11 @@ public class PurchaseService {
     public void updatePurchases(long userID, Map<Long, String> purchaseStatusByID) {
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<Purchase> purchaseDao = daoSession.getDao(Purchase.class);
-            Dao<Status> statusDao = daoSession.getDao(Status.class);
             daoSession.beginTransaction();
-            for (Map.Entry<Long, String> longStringEntry : purchaseStatusByID.entrySet()) {
-                Long purchaseID = longStringEntry.getKey();
-                String purchaseNewStatus = longStringEntry.getValue();
-                Purchase purchase = purchaseDao.find(purchaseID);
+            //all purchases are read by one query instead of reading each of them
+            List<Purchase> purchases = purchaseDao.findAllByIds(purchaseStatusByID.keySet());
+            for (Purchase purchase : purchases) {
+                String purchaseNewStatus = purchaseStatusByID.get(purchase.getId());
                 //compare status names
                 if (purchase.getStatus().getName().equalsIgnoreCase(purchaseNewStatus)) {
                     continue; //no need to update
@@ -53,8 +53,8 @@ public class PurchaseService {
                     case Status.DELIVERY:
                     case Status.UNPAID:
                     case Status.PAID:
-                        //try to find exist status with the same value and use them
-                        Status status = statusDao.findFirstByParameter(STATUS_NAME_COLUMN, purchaseNewStatus);
+                        //use exist status with the same value
+                        Status status = referenceDataService.getStatus(purchaseNewStatus);
                         purchase.setStatus(status);
                         purchaseDao.updateWithAdditionalParameter(purchase, USER_ID_COLUMN, userID);
                 }
@@ -70,23 +70,42 @@ public class PurchaseService {
         }
     }
 
+    /**
+     * Inserts all purchases by one batch. Purchases with the same date or status
+     * share one date or status object, so each of them is looked up once
+     * and inserted once if it doesn't exist yet. Statuses are resolved
+     * by {@link ReferenceDataService}, it's refreshed if new status was inserted.
+     */
     public void addPurchaseListToUser(Long userID, List<Purchase> purchaseList) {
+        Map<String, Status> statusByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); //as names in database
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Purchase> purchaseDao = daoSession.getDao(Purchase.class);
+            Dao<Date> dateDao = daoSession.getDao(Date.class);
+            Map<Long, Date> dateByTime = new HashMap<>();
             daoSession.beginTransaction();
             for (Purchase purchase : purchaseList) {
-                Dao<Purchase> purchaseDao = daoSession.getDao(Purchase.class);
-                Dao<Date> dateDao = daoSession.getDao(Date.class);
-                Dao<Status> statusDao = daoSession.getDao(Status.class);
                 //try to find exist date and status with the same value and use them instead inserting
-                Date existDate = dateDao.findFirstByParameter(DATE_TIME_COLUMN, purchase.getDate().getTime());
-                Status existStatus = statusDao.findFirstByParameter(STATUS_NAME_COLUMN, purchase.getStatus().getName());
-                //setting to purchase id of already exist date and time records
-                if (existDate != null) purchase.getDate().setId(existDate.getId());
-                if (existStatus != null) purchase.getStatus().setId(existStatus.getId());
-                purchaseDao.insertWithAdditionalParameter(purchase, USER_ID_COLUMN, userID);
+                Date date = dateByTime.computeIfAbsent(purchase.getDate().getTime(), time -> {
+                    Date existDate = dateDao.findFirstByParameter(DATE_TIME_COLUMN, time);
+                    if (existDate != null) purchase.getDate().setId(existDate.getId());
+                    return purchase.getDate();
+                });
+                Status status = statusByName.computeIfAbsent(purchase.getStatus().getName(), name -> {
+                    Status existStatus = referenceDataService.getStatus(name);
+                    return (existStatus != null) ? existStatus : purchase.getStatus();
+                });
+                purchase.setDate(date);
+                purchase.setStatus(status);
             }
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put(USER_ID_COLUMN, userID);
+            purchaseDao.insertAll(purchaseList, parameters);
             daoSession.endTransaction();
         }
+        //refreshing takes its own connection, so it's done after the session is closed
+        boolean newStatusInserted = statusByName.keySet().stream()
+                .anyMatch(name -> referenceDataService.getStatus(name) == null);
+        if (newStatusInserted) referenceDataService.refresh();
     }
 
     private List<Order> getOrderList(List<Purchase> purchaseList) {
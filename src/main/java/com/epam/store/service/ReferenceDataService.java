@@ -0,0 +1,73 @@
+package com.epam.store.service;
+
+import com.epam.store.dao.DaoFactory;
+import com.epam.store.dao.DaoSession;
+import com.epam.store.model.Role;
+import com.epam.store.model.Status;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of the small lookup tables (statuses and roles), which are loaded
+ * once and resolved by name without any query. Names are case insensitive,
+ * as well as in the database. Loaded data is immutable,
+ * {@link #refresh()} replaces it entirely, so readers always see consistent data.
+ * Given entities are shared by all threads and must not be changed.
+ */
+public class ReferenceDataService {
+    private DaoFactory daoFactory;
+    private volatile ReferenceData referenceData;
+
+    public ReferenceDataService(DaoFactory daoFactory) {
+        this.daoFactory = daoFactory;
+        refresh();
+    }
+
+    /**
+     * Reloads all reference data from the database, must be called after changing of it
+     */
+    public void refresh() {
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Map<String, Status> statusByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Status status : daoSession.getDao(Status.class).getAll()) {
+                statusByName.put(status.getName(), status);
+            }
+            Map<String, Role> roleByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Role role : daoSession.getDao(Role.class).getAll()) {
+                roleByName.put(role.getName(), role);
+            }
+            referenceData = new ReferenceData(statusByName, roleByName);
+        }
+    }
+
+    /**
+     * @return status with such name or null if there is no such status
+     */
+    public Status getStatus(String name) {
+        return referenceData.statusByName.get(name);
+    }
+
+    public Collection<Status> getStatuses() {
+        return referenceData.statusByName.values();
+    }
+
+    /**
+     * @return role with such name or null if there is no such role
+     */
+    public Role getRole(String name) {
+        return referenceData.roleByName.get(name);
+    }
+
+    private static class ReferenceData {
+        private final Map<String, Status> statusByName;
+        private final Map<String, Role> roleByName;
+
+        private ReferenceData(Map<String, Status> statusByName, Map<String, Role> roleByName) {
+            this.statusByName = Collections.unmodifiableMap(statusByName);
+            this.roleByName = Collections.unmodifiableMap(roleByName);
+        }
+    }
+}
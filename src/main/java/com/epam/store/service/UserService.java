@@ -4,20 +4,29 @@ import com.epam.store.PasswordEncryptor;
 import com.epam.store.dao.Dao;
 import com.epam.store.dao.DaoFactory;
 import com.epam.store.dao.DaoSession;
+import com.epam.store.dao.FetchPlan;
+import com.epam.store.dao.PageRequest;
 import com.epam.store.model.Password;
 import com.epam.store.model.Role;
 import com.epam.store.model.User;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UserService {
     private static final String USER_EMAIL_COLUMN = "EMAIL";
-    private static final String ROLE_NAME_COLUMN = "NAME";
     private static final String ROLE_ID_COLUMN = "ROLE_ID";
+    private static final String BANNED_COLUMN = "BANNED";
+    private static final String PASSWORD_FIELD = "password";
+    //user lists don't show passwords, so they are loaded only on access
+    private static final FetchPlan USER_LIST_FETCH_PLAN = FetchPlan.all().lazy(PASSWORD_FIELD);
     private DaoFactory daoFactory;
+    private ReferenceDataService referenceDataService;
 
-    public UserService(DaoFactory daoFactory) {
+    public UserService(DaoFactory daoFactory, ReferenceDataService referenceDataService) {
         this.daoFactory = daoFactory;
+        this.referenceDataService = referenceDataService;
     }
 
     public User findUser(String email) {
@@ -54,9 +63,7 @@ public class UserService {
             User user = new User();
             user.setName(name);
             user.setEmail(email);
-            Dao<Role> roleDao = daoSession.getDao(Role.class);
-            Role userRole = roleDao.findFirstByParameter(ROLE_NAME_COLUMN, Role.USER_ROLE_NAME);
-            user.setRole(userRole);
+            user.setRole(referenceDataService.getRole(Role.USER_ROLE_NAME));
             user.setPassword(PasswordEncryptor.encrypt(password.getBytes()));
             return userDao.insert(user);
         }
@@ -79,10 +86,23 @@ public class UserService {
     }
 
 
-    public List<User> getAllUsers() {
+    /**
+     * Gets page of the users (not admins) with specified ban state, ordered by registration
+     *
+     * @param banned     true for the black list, false for the active users
+     * @param pageNumber number of the page, starting from one, number after the last page gives the last page
+     */
+    public Page<User> getUsers(boolean banned, int pageNumber, int pageSize) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put(ROLE_ID_COLUMN, Role.USER_ROLE_ID);
+        parameters.put(BANNED_COLUMN, banned);
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
             Dao<User> userDao = daoSession.getDao(User.class);
-            return userDao.findByParameter(ROLE_ID_COLUMN, Role.USER_ROLE_ID);
+            long usersCount = userDao.count(parameters);
+            int number = Page.clampPageNumber(pageNumber, usersCount, pageSize);
+            List<User> users = userDao.findByParameters(parameters, USER_LIST_FETCH_PLAN,
+                    PageRequest.page(number - 1, pageSize));
+            return new Page<>(users, number, usersCount, pageSize);
         }
     }
 
@@ -12,9 +12,11 @@
         <c:choose>
             <c:when test="${users != null}">
                 <page:usersTable users="${users}"/>
+                <page:pagination page="${usersPage}"/>
             </c:when>
             <c:when test="${blackList != null}">
                 <page:blackListTable blackList="${blackList}"/>
+                <page:pagination page="${blackListPage}"/>
             </c:when>
             <c:otherwise>
                 <div class="center_text">
@@ -1,5 +1,6 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" pageEncoding="UTF-8" %>
 <%@ taglib prefix="page" tagdir="/WEB-INF/tags" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 
 <page:genericPage title="The Suspicious Shop">
     <jsp:attribute name="leftSideBar">
@@ -7,6 +8,9 @@
     </jsp:attribute>
     <jsp:body>
         <page:displayProducts products="${products}"/>
+        <c:if test="${productsPage != null}">
+            <page:pagination page="${productsPage}"/>
+        </c:if>
     </jsp:body>
 </page:genericPage>
 
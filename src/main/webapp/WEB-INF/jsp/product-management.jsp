@@ -15,6 +15,7 @@
             <c:choose>
                 <c:when test="${fn:length(products) > 0}">
                     <page:productsTable products="${products}" categoryName="${categoryName}"/>
+                    <page:pagination page="${productsPage}"/>
                 </c:when>
                 <c:otherwise>
                     <fmt:message key="product-management.message.empty" var="emptyMessage"/>
@@ -11,6 +11,7 @@ import com.epam.store.model.IntegerAttribute;
 import com.epam.store.model.StringAttribute;
 
 import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
 
 public class AttributeDaoTest {
     public static void main(String[] args) {
@@ -18,8 +19,11 @@ public class AttributeDaoTest {
         SqlQueryFactory queryFactory;
         DBMetadataManager dbMetadataManager;
         try (SqlPooledConnection connection = cp.getConnection()) {
-            dbMetadataManager = new DBMetadataManager(connection.getMetaData());
-            queryFactory = new SqlQueryFactory(dbMetadataManager);
+            DatabaseMetaData metaData = connection.getMetaData();
+            Dialect dialect = Dialect.forDatabase(metaData);
+            String schema = dialect.getSchema(metaData);
+            dbMetadataManager = new DBMetadataManager(metaData, dialect.getCatalog(metaData), schema);
+            queryFactory = new SqlQueryFactory(dbMetadataManager, dialect);
         }
         DaoFactory daoFactory = new JdbcDaoFactory(cp);
         Attribute intAttribute = new IntegerAttribute("int", 1);
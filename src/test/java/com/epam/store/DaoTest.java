@@ -5,17 +5,25 @@ import com.epam.store.dbpool.ConnectionPool;
 import com.epam.store.dbpool.SqlConnectionPool;
 import com.epam.store.dbpool.SqlPooledConnection;
 import com.epam.store.metadata.DBMetadataManager;
-import com.epam.store.model.Password;
-import com.epam.store.model.Role;
-import com.epam.store.model.User;
+import com.epam.store.metadata.EntityManager;
+import com.epam.store.model.*;
 import org.junit.Assert;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class DaoTest extends Assert {
+    private static final long MISSING_ID = Integer.MAX_VALUE; //ids are INT columns
+    private static final int IDS_AMOUNT = 600; //more than max size of IN list
 
     @org.junit.Test
     public void InsertAndReadSameUserFindByParametersThenDeleteAndTryFind() {
@@ -23,8 +31,11 @@ public class DaoTest extends Assert {
         SqlQueryFactory queryFactory;
         DBMetadataManager dbMetadataManager;
         try (SqlPooledConnection connection = cp.getConnection()) {
-            dbMetadataManager = new DBMetadataManager(connection.getMetaData());
-            queryFactory = new SqlQueryFactory(dbMetadataManager);
+            DatabaseMetaData metaData = connection.getMetaData();
+            Dialect dialect = Dialect.forDatabase(metaData);
+            String schema = dialect.getSchema(metaData);
+            dbMetadataManager = new DBMetadataManager(metaData, dialect.getCatalog(metaData), schema);
+            queryFactory = new SqlQueryFactory(dbMetadataManager, dialect);
         }
         DaoFactory daoFactory = new JdbcDaoFactory(cp);
         try (DaoSession daoSession = daoFactory.getDaoSession()) {
@@ -52,4 +63,379 @@ public class DaoTest extends Assert {
         }
         cp.shutdown();
     }
+
+    @org.junit.Test
+    public void ReadProductWithDifferentFetchPlansGivesSameDependencies() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Product> productDao = daoSession.getDao(Product.class);
+            Product product = new Product(
+                    "Test product",
+                    new Category("Test category"),
+                    "Description",
+                    new Price(new BigDecimal("10.5")),
+                    new Image("image.png", "image/png", new byte[]{1, 2, 3}));
+            productDao.insert(product);
+            Product joined = productDao.find(product.getId(), FetchPlan.all());
+            Product notJoined = productDao.find(product.getId(), FetchPlan.none());
+            Product partiallyJoined = productDao.find(product.getId(), FetchPlan.join("category"));
+            assertEquals(product.getCategory(), joined.getCategory());
+            assertEquals(0, product.getPrice().getValue().compareTo(joined.getPrice().getValue()));
+            assertArrayEquals(product.getImage().getContent(), joined.getImage().getContent());
+            assertEquals(joined, notJoined);
+            assertEquals(joined, partiallyJoined);
+            productDao.delete(product.getId());
+            daoSession.getDao(Category.class).delete(product.getCategory().getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void LazyDependencyIsLoadedOnAccessAfterSessionClose() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        User user = new User(
+                "Lazy",
+                "Lazy@gmail.com",
+                new Role(Role.USER_ROLE_NAME),
+                new Password("hashHere", "SaltHere"),
+                false);
+        User lazyUser;
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<User> userDao = daoSession.getDao(User.class);
+            userDao.insert(user);
+            lazyUser = userDao.find(user.getId(), FetchPlan.all().lazy("password"));
+        }
+        assertEquals(user.getPassword(), lazyUser.getPassword());
+        assertFalse(lazyUser.getPassword().isLazyReference());
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            daoSession.getDao(User.class).delete(user.getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void UpdateOfEntityWithLazyDependencyDoesNotLoadIt() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        User user = new User(
+                "Lazy update",
+                "LazyUpdate@gmail.com",
+                new Role(Role.USER_ROLE_NAME),
+                new Password("hashHere", "SaltHere"),
+                false);
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<User> userDao = daoSession.getDao(User.class);
+            userDao.insert(user);
+            User lazyUser = userDao.find(user.getId(), FetchPlan.all().lazy("password"));
+            lazyUser.setBanned(true);
+            assertTrue(userDao.update(lazyUser));
+            Password password = (Password) EntityManager.getManager(User.class).readField("password", lazyUser);
+            assertTrue(password.isLazyReference());
+            assertEquals(user.getPassword().getId(), password.getId());
+            assertEquals(user.getPassword(), userDao.find(user.getId(), FetchPlan.all()).getPassword());
+            userDao.delete(user.getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void InsertAllAssignsIdsAndInsertsSharedDependencyOnceThenDeleteAllCountsDeleted() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        String categoryName = "Batch category " + System.nanoTime();
+        Category category = new Category(categoryName);
+        Image image = new Image("image.png", "image/png", new byte[]{1, 2, 3});
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            products.add(createProduct("Batch product " + i, category, image));
+        }
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Product> productDao = daoSession.getDao(Product.class);
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            productDao.insertAll(products, new HashMap<>());
+            Set<Long> ids = new HashSet<>();
+            for (Product product : products) {
+                assertNotNull(product.getId());
+                ids.add(product.getId());
+                Product read = productDao.find(product.getId(), FetchPlan.none());
+                assertEquals(product.getName(), read.getName());
+                assertEquals(category.getId(), read.getCategory().getId());
+                assertEquals(image.getId(), read.getImage().getId());
+            }
+            assertEquals(products.size(), ids.size());
+            assertNotNull(category.getId());
+            assertEquals(1, categoryDao.count(Collections.singletonMap("NAME", categoryName)));
+
+            Map<Long, List<Product>> grouped = productDao.findGroupedByParameter("CATEGORY_ID",
+                    Arrays.asList(category.getId(), MISSING_ID));
+            assertEquals(Collections.singleton(category.getId()), grouped.keySet());
+            assertEquals(products.size(), grouped.get(category.getId()).size());
+
+            long first = products.get(0).getId();
+            long second = products.get(1).getId();
+            assertEquals(2, productDao.deleteAll(Arrays.asList(first, second, first, MISSING_ID)));
+            assertNull(productDao.find(first));
+            assertNull(productDao.find(second));
+            assertEquals(1, productDao.count(Collections.singletonMap("CATEGORY_ID", category.getId())));
+            productDao.delete(products.get(2).getId());
+            categoryDao.delete(category.getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void PagesAreOrderedWithPrimaryKeyTieBreakAndKeysetPageFollowsId() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        Category category = new Category("Paging category " + System.nanoTime());
+        Image image = new Image("image.png", "image/png", new byte[]{1, 2, 3});
+        List<Product> products = new ArrayList<>();
+        for (String name : new String[]{"b", "a", "b", "a", "c"}) {
+            products.add(createProduct(name, category, image));
+        }
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Product> productDao = daoSession.getDao(Product.class);
+            productDao.insertAll(products, new HashMap<>());
+            Map<String, Object> parameters = Collections.singletonMap("CATEGORY_ID", category.getId());
+            assertEquals(products.size(), productDao.count(parameters));
+
+            //names have duplicates, so records with equal names must be ordered by id
+            List<Product> expected = new ArrayList<>(products);
+            expected.sort(Comparator.comparing(Product::getName).thenComparing(Product::getId));
+            assertEquals(getIds(expected), getIds(readAllPages(productDao, parameters, false)));
+            Collections.reverse(expected);
+            assertEquals(getIds(expected), getIds(readAllPages(productDao, parameters, true)));
+
+            List<Product> firstPage = productDao.findByParameters(parameters, FetchPlan.none(), PageRequest.first(2));
+            assertEquals(getIds(products.subList(0, 2)), getIds(firstPage));
+            long lastId = firstPage.get(firstPage.size() - 1).getId();
+            List<Product> nextPage = productDao.findByParameters(parameters, FetchPlan.none(),
+                    PageRequest.first(2).after(lastId));
+            assertEquals(getIds(products.subList(2, 4)), getIds(nextPage));
+            List<Product> previousPage = productDao.findByParameters(parameters, FetchPlan.none(),
+                    PageRequest.first(2).orderByDescending("PRODUCT_ID").after(nextPage.get(0).getId()));
+            assertEquals(getIds(Arrays.asList(products.get(1), products.get(0))), getIds(previousPage));
+
+            List<Long> ids = getIds(products);
+            productDao.deleteAll(ids);
+            assertEquals(0, productDao.count(parameters));
+            daoSession.getDao(Category.class).delete(category.getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void FindAllByIdsKeepsRequestOrderSkippingDuplicatesAndMissingIdsAcrossChunks() {
+        ConnectionPool cp = new SqlConnectionPool();
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            categories.add(new Category("Ids category " + i + " " + System.nanoTime()));
+        }
+        //more ids than fit in one IN list, found ids are in the first and in the last chunk
+        List<Long> ids = new ArrayList<>();
+        List<Long> expectedIds = new ArrayList<>();
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            categoryDao.insertAll(categories, new HashMap<>());
+            ids.add(categories.get(2).getId());
+            ids.add(categories.get(0).getId());
+            for (int i = 1; i <= IDS_AMOUNT; i++) {
+                ids.add(MISSING_ID - i);
+                if (i == IDS_AMOUNT / 2) ids.add(categories.get(0).getId()); //duplicate
+            }
+            ids.add(categories.get(3).getId());
+            ids.add(categories.get(1).getId());
+            expectedIds.addAll(getIds(Arrays.asList(categories.get(2), categories.get(0),
+                    categories.get(3), categories.get(1))));
+            assertEquals(expectedIds, getIds(categoryDao.findAllByIds(ids, FetchPlan.none())));
+        }
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            assertEquals(expectedIds, getIds(categoryDao.findAllByIds(ids)));
+            //found entities are taken from the identity map now
+            assertEquals(expectedIds, getIds(categoryDao.findAllByIds(ids)));
+            assertEquals(categories.size(), categoryDao.deleteAll(ids));
+            assertTrue(categoryDao.findAllByIds(ids).isEmpty());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void StreamLoadsNotJoinedDependenciesAsStubsAndClosesCursor() {
+        CursorCountingPool cp = new CursorCountingPool(new SqlConnectionPool());
+        DaoFactory daoFactory = new JdbcDaoFactory(cp);
+        Category category = new Category("Stream category " + System.nanoTime());
+        Image image = new Image("image.png", "image/png", new byte[]{1, 2, 3});
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            products.add(createProduct("Stream product " + i, category, image));
+        }
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Product> productDao = daoSession.getDao(Product.class);
+            productDao.insertAll(products, new HashMap<>());
+            Map<String, Object> parameters = Collections.singletonMap("CATEGORY_ID", category.getId());
+
+            //fetch size is less than amount of the records, so rows are fetched while the stream is read
+            try (Stream<Product> stream = productDao.stream(parameters, FetchPlan.join("category"), 2)) {
+                List<Product> streamed = stream.collect(Collectors.toList());
+                assertEquals(0, cp.getOpenCursors()); //closed after the last row
+                assertEquals(new HashSet<>(getIds(products)), new HashSet<>(getIds(streamed)));
+                for (Product product : streamed) {
+                    assertEquals(category.getName(), product.getCategory().getName());
+                    assertEquals(image.getId(), product.getImage().getId());
+                    assertNull(product.getImage().getContent()); //not joined, so it's a stub
+                }
+            }
+
+            Stream<Product> stream = productDao.stream(parameters, FetchPlan.none(), 2);
+            Iterator<Product> iterator = stream.iterator();
+            assertNotNull(iterator.next().getCategory().getId());
+            assertEquals(1, cp.getOpenCursors());
+            stream.close();
+            assertEquals(0, cp.getOpenCursors());
+
+            List<Product> consumed = new ArrayList<>();
+            productDao.forEach(parameters, FetchPlan.all(), consumed::add);
+            assertEquals(products.size(), consumed.size());
+            assertEquals(0, cp.getOpenCursors());
+
+            productDao.deleteAll(getIds(products));
+            daoSession.getDao(Category.class).delete(category.getId());
+        }
+        cp.shutdown();
+    }
+
+    @org.junit.Test
+    public void SharedCacheServesEntityToOtherSessionsUntilChangeAndKeepsNoRolledBackChanges() {
+        ConnectionPool cp = new SqlConnectionPool();
+        JdbcDaoFactory daoFactory = new JdbcDaoFactory(cp);
+        String name = "Cached category " + System.nanoTime();
+        Category category = new Category(name);
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            categoryDao.insert(category);
+            assertSame(categoryDao.find(category.getId()), categoryDao.find(category.getId()));
+        }
+        long hits = getCategoryCacheHits(daoFactory);
+        assertEquals(name, findCategory(daoFactory, category.getId()).getName());
+        assertEquals(hits + 1, getCategoryCacheHits(daoFactory));
+
+        //session is closed without the end of the transaction, so the change is rolled back
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            daoSession.beginTransaction();
+            Category changed = categoryDao.find(category.getId());
+            changed.setName(name + " rolled back");
+            assertTrue(categoryDao.update(changed));
+            assertEquals(changed.getName(), categoryDao.find(category.getId()).getName());
+        }
+        assertEquals(name, findCategory(daoFactory, category.getId()).getName());
+
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            Dao<Category> categoryDao = daoSession.getDao(Category.class);
+            Category changed = categoryDao.find(category.getId());
+            changed.setName(name + " updated");
+            assertTrue(categoryDao.update(changed));
+        }
+        assertEquals(name + " updated", findCategory(daoFactory, category.getId()).getName());
+
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            assertTrue(daoSession.getDao(Category.class).delete(category.getId()));
+        }
+        assertNull(findCategory(daoFactory, category.getId()));
+        cp.shutdown();
+    }
+
+    /**
+     * Reads pages of size 2 ordered by name until the empty page
+     */
+    private List<Product> readAllPages(Dao<Product> dao, Map<String, Object> parameters, boolean descending) {
+        List<Product> all = new ArrayList<>();
+        for (int pageIndex = 0; ; pageIndex++) {
+            PageRequest pageRequest = PageRequest.page(pageIndex, 2);
+            pageRequest = descending ? pageRequest.orderByDescending("NAME") : pageRequest.orderBy("NAME");
+            List<Product> page = dao.findByParameters(parameters, FetchPlan.none(), pageRequest);
+            assertTrue(page.size() <= 2);
+            if (page.isEmpty()) return all;
+            all.addAll(page);
+        }
+    }
+
+    private List<Long> getIds(List<? extends BaseEntity> entities) {
+        List<Long> ids = new ArrayList<>();
+        for (BaseEntity entity : entities) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    private Category findCategory(DaoFactory daoFactory, long id) {
+        try (DaoSession daoSession = daoFactory.getDaoSession()) {
+            return daoSession.getDao(Category.class).find(id);
+        }
+    }
+
+    private long getCategoryCacheHits(JdbcDaoFactory daoFactory) {
+        return daoFactory.getEntityCacheStatistics().get(Category.class.getSimpleName()).hitCount();
+    }
+
+    private Product createProduct(String name, Category category, Image image) {
+        return new Product(name, category, "Description", new Price(new BigDecimal("10.5")), image);
+    }
+
+    /**
+     * Pool which counts not closed statements prepared for the cursor reading
+     */
+    private static class CursorCountingPool implements ConnectionPool {
+        private static final String PREPARE_STATEMENT_METHOD_NAME = "prepareStatement";
+        private static final String CLOSE_METHOD_NAME = "close";
+        private final ConnectionPool pool;
+        private final AtomicInteger openCursors = new AtomicInteger();
+
+        private CursorCountingPool(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public SqlPooledConnection getConnection() {
+            SqlPooledConnection connection = pool.getConnection();
+            return (SqlPooledConnection) Proxy.newProxyInstance(SqlPooledConnection.class.getClassLoader(),
+                    new Class<?>[]{SqlPooledConnection.class}, (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        boolean cursor = method.getName().equals(PREPARE_STATEMENT_METHOD_NAME) && args.length == 3;
+                        return cursor ? countClosing((PreparedStatement) result) : result;
+                    });
+        }
+
+        @Override
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        private int getOpenCursors() {
+            return openCursors.get();
+        }
+
+        private PreparedStatement countClosing(PreparedStatement statement) {
+            openCursors.incrementAndGet();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        boolean closing = method.getName().equals(CLOSE_METHOD_NAME) && !statement.isClosed();
+                        Object result = invoke(statement, method, args);
+                        if (closing) openCursors.decrementAndGet();
+                        return result;
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.epam.store;
 
+import com.epam.store.dao.Dialect;
 import com.epam.store.dao.SqlQuery;
 import com.epam.store.dao.SqlQueryFactory;
 import com.epam.store.dao.SqlQueryType;
@@ -10,14 +11,19 @@ import com.epam.store.metadata.DBMetadataManager;
 import com.epam.store.metadata.DatabaseColumn;
 import com.epam.store.model.Product;
 
+import java.sql.DatabaseMetaData;
+
 public class SqlQueryFactoryTest {
     public static void main(String[] args) throws ClassNotFoundException {
         ConnectionPool cp = new SqlConnectionPool();
         SqlQueryFactory queryFactory;
         DBMetadataManager dbMetadataManager;
         try (SqlPooledConnection connection = cp.getConnection()) {
-            dbMetadataManager = new DBMetadataManager(connection.getMetaData());
-            queryFactory = new SqlQueryFactory(dbMetadataManager);
+            DatabaseMetaData metaData = connection.getMetaData();
+            Dialect dialect = Dialect.forDatabase(metaData);
+            String schema = dialect.getSchema(metaData);
+            dbMetadataManager = new DBMetadataManager(metaData, dialect.getCatalog(metaData), schema);
+            queryFactory = new SqlQueryFactory(dbMetadataManager, dialect);
         }
         for (SqlQueryType type : SqlQueryType.values()) {
             SqlQuery query = queryFactory.getQueryForClass(type, Product.class);
@@ -0,0 +1,127 @@
+package com.epam.store.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionBagTest extends Assert {
+    private static final int ENTRIES = 4;
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 2000;
+    private static final long BORROW_TIMEOUT = 10; //sec
+
+    @Test
+    public void concurrentBorrowNeverGivesEntryToTwoThreads() throws Exception {
+        ConnectionBag<TestEntry> bag = new ConnectionBag<>();
+        List<TestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            TestEntry entry = new TestEntry();
+            entries.add(entry);
+            bag.add(entry);
+        }
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger timeouts = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    TestEntry entry = bag.borrow(BORROW_TIMEOUT, TimeUnit.SECONDS);
+                    if (entry == null) {
+                        timeouts.incrementAndGet();
+                        continue;
+                    }
+                    if (entry.holders.incrementAndGet() != 1) conflicts.incrementAndGet();
+                    if (entry.getState() != ConnectionBag.STATE_IN_USE) conflicts.incrementAndGet();
+                    Thread.yield();
+                    entry.holders.decrementAndGet();
+                    bag.requite(entry);
+                }
+                return null;
+            }));
+        }
+        //reserves free entries concurrently, as the house keeper does to validate them
+        Future<?> reserver = executor.submit(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (TestEntry entry : entries) {
+                    if (!bag.reserve(entry)) continue;
+                    if (entry.holders.incrementAndGet() != 1) conflicts.incrementAndGet();
+                    entry.holders.decrementAndGet();
+                    bag.unreserve(entry);
+                }
+            }
+        });
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        reserver.cancel(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(BORROW_TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, conflicts.get());
+        assertEquals(0, timeouts.get());
+        assertEquals(ENTRIES, bag.values(ConnectionBag.STATE_NOT_IN_USE).size());
+        assertEquals(0, bag.getWaitingThreadsCount());
+    }
+
+    @Test
+    public void borrowFromEmptyBagReturnsNullAfterTimeout() throws InterruptedException {
+        ConnectionBag<TestEntry> bag = new ConnectionBag<>();
+        TestEntry entry = new TestEntry();
+        bag.add(entry);
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertNull(bag.borrow(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void returnedEntryIsHandedOffToWaitingThread() throws Exception {
+        ConnectionBag<TestEntry> bag = new ConnectionBag<>();
+        TestEntry entry = new TestEntry();
+        bag.add(entry);
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<TestEntry> waiter = executor.submit(() -> bag.borrow(BORROW_TIMEOUT, TimeUnit.SECONDS));
+        while (bag.getWaitingThreadsCount() == 0) {
+            Thread.yield();
+        }
+        bag.requite(entry);
+        assertSame(entry, waiter.get(BORROW_TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(ConnectionBag.STATE_IN_USE, entry.getState());
+        executor.shutdown();
+    }
+
+    @Test
+    public void reservedEntryIsNotBorrowedAndOnlyBorrowedOrReservedEntryIsRemoved() throws InterruptedException {
+        ConnectionBag<TestEntry> bag = new ConnectionBag<>();
+        TestEntry entry = new TestEntry();
+        bag.add(entry);
+        assertFalse(bag.remove(entry));
+        assertTrue(bag.reserve(entry));
+        assertNull(bag.borrow(0, TimeUnit.MILLISECONDS));
+        bag.unreserve(entry);
+        assertSame(entry, bag.borrow(0, TimeUnit.MILLISECONDS));
+        assertFalse(bag.reserve(entry));
+        assertTrue(bag.remove(entry));
+        assertEquals(0, bag.size());
+    }
+
+    private static class TestEntry implements ConnectionBag.BagEntry {
+        private final AtomicInteger state = new AtomicInteger(ConnectionBag.STATE_NOT_IN_USE);
+        private final AtomicInteger holders = new AtomicInteger();
+
+        @Override
+        public int getState() {
+            return state.get();
+        }
+
+        @Override
+        public boolean compareAndSetState(int expectedState, int newState) {
+            return state.compareAndSet(expectedState, newState);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.epam.store.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SqlConnectionPoolTest extends Assert {
+    private static final int MAX_CONNECTIONS = 2;
+    private static final long BORROW_TIMEOUT = 300; //ms
+
+    @Test
+    public void getConnectionThrowsExhaustedExceptionAfterBorrowTimeout() {
+        SqlConnectionPool pool = createPool(BORROW_TIMEOUT);
+        SqlPooledConnection first = pool.getConnection();
+        SqlPooledConnection second = pool.getConnection();
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            fail("Connection was given over the limit");
+        } catch (PoolExhaustedException e) {
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + waited + " ms", waited >= BORROW_TIMEOUT);
+            assertTrue("Waited " + waited + " ms", waited < BORROW_TIMEOUT + TimeUnit.SECONDS.toMillis(5));
+            assertEquals(MAX_CONNECTIONS, e.getConnectionHolders().size());
+            assertEquals(MAX_CONNECTIONS, pool.getStatistics().getTotalConnections());
+        } finally {
+            first.close();
+            second.close();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void waitingThreadGetsReturnedConnection() throws Exception {
+        SqlConnectionPool pool = createPool(TimeUnit.SECONDS.toMillis(10));
+        SqlPooledConnection first = pool.getConnection();
+        SqlPooledConnection second = pool.getConnection();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SqlPooledConnection> waiter = executor.submit(pool::getConnection);
+            Thread.sleep(BORROW_TIMEOUT);
+            assertFalse(waiter.isDone());
+            second.close();
+            SqlPooledConnection connection = waiter.get(5, TimeUnit.SECONDS);
+            assertSame(second, connection);
+            connection.close();
+        } finally {
+            executor.shutdown();
+            first.close();
+            pool.shutdown();
+        }
+    }
+
+    private SqlConnectionPool createPool(long borrowTimeout) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("maxConnections", String.valueOf(MAX_CONNECTIONS));
+        properties.put("borrowTimeout", String.valueOf(borrowTimeout));
+        return new SqlConnectionPool(new ConnectionPoolConfig(properties));
+    }
+}